@@ -0,0 +1,95 @@
+package exactly;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic task fixtures shared by the benchmarks.
+ */
+final class BenchmarkData {
+    private static final String[] WORDS = {
+        "read", "book", "return", "project", "meeting", "submit", "report", "call", "mum",
+        "buy", "groceries", "finish", "assignment", "team", "lunch", "review", "code", "gym"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generate a reproducible mix of todos, deadlines and events.
+     *
+     * @param count number of tasks to generate
+     * @return the generated tasks; about one in three is marked done
+     */
+    static List<Task> tasks(int count) {
+        Random random = new Random(count);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String desc = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            Task task;
+            switch (random.nextInt(4)) {
+            case 0:
+                task = new Deadline(desc, "2025-" + String.format("%02d", 1 + random.nextInt(12))
+                        + "-" + String.format("%02d", 1 + random.nextInt(28)));
+                break;
+            case 1:
+                task = new Event(desc, "Mon 2pm", "4pm");
+                break;
+            default:
+                task = new Todo(desc);
+            }
+            if (random.nextInt(3) == 0) task.markAsDone();
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Generate events with absolute times spread over one year, mostly an hour or two
+     * long, with about one in a hundred running for several days.
+     *
+     * @param count number of events to generate
+     * @return the generated events
+     */
+    static List<Task> timedEvents(int count) {
+        Random random = new Random(count);
+        LocalDateTime yearStart = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = yearStart.plusMinutes(15L * random.nextInt(365 * 24 * 4));
+            LocalDateTime end = start.plusMinutes(random.nextInt(100) == 0
+                    ? 60L * 24 * (1 + random.nextInt(5)) : 30L * (1 + random.nextInt(4)));
+            tasks.add(new Event(WORDS[random.nextInt(WORDS.length)] + " " + i,
+                    start.toString().replace('T', ' '), end.toString().replace('T', ' ')));
+        }
+        return tasks;
+    }
+
+    /**
+     * Write a data file holding the given number of generated tasks.
+     *
+     * @param file  where to write the data file
+     * @param count number of tasks to write
+     */
+    static void writeDataFile(Path file, int count) {
+        new Storage(file.toString()).save(tasks(count));
+    }
+
+    /**
+     * Recursively delete a temporary benchmark directory.
+     *
+     * @param dir the directory to delete
+     */
+    static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package exactly;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * End-to-end cost of {@link Exactly#getResponse(String)} per command type,
+ * including persistence, against a list of {@code size} tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean journaled;
+
+    @Param({"list", "find", "mark", "unmark", "todo", "deadline", "event", "duplicate", "delete", "unknown"})
+    public String command;
+
+    private Path dir;
+    private Exactly exactly;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void createDataFile() throws IOException {
+        dir = Files.createTempDirectory("exactly-bench");
+        BenchmarkData.writeDataFile(dir.resolve("exactly.txt"), size);
+    }
+
+    // Reload every iteration so commands that add tasks do not keep growing the list
+    @Setup(Level.Iteration)
+    public void load() {
+        exactly = new Exactly(dir.resolve("exactly.txt").toString(), journaled);
+        exactly.getResponse("todo benchmark duplicate");
+        counter = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        BenchmarkData.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public String getResponse() {
+        int n = counter++;
+        switch (command) {
+        case "list":
+            return exactly.getResponse("list");
+        case "find":
+            return exactly.getResponse("find project meeting");
+        case "mark":
+            return exactly.getResponse("mark " + (n % size + 1));
+        case "unmark":
+            return exactly.getResponse("unmark " + (n % size + 1));
+        case "todo":
+            return exactly.getResponse("todo benchmark task " + n);
+        case "deadline":
+            return exactly.getResponse("deadline benchmark task " + n + " /by 2025-05-01");
+        case "event":
+            return exactly.getResponse("event benchmark task " + n + " /from Mon 2pm /to 4pm");
+        case "duplicate":
+            return exactly.getResponse("todo benchmark duplicate");
+        case "delete":
+            // Add then delete so the list size stays put
+            exactly.getResponse("todo benchmark task " + n);
+            return exactly.getResponse("delete " + (size + 1));
+        default:
+            return exactly.getResponse("blah");
+        }
+    }
+}
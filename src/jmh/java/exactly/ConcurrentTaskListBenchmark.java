@@ -0,0 +1,85 @@
+package exactly;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of one shared list with one writer and several readers.
+ *
+ * "locked" guards a plain {@link TaskList} with a single monitor, the only safe way to share
+ * it; "concurrent" uses {@link ConcurrentTaskList}, whose readers work from snapshots.
+ * The writer flips tasks at the end of the list, so each write invalidates the listing.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrentTaskListBenchmark {
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"locked", "concurrent"})
+    public String impl;
+
+    private TaskList list;
+    private boolean isLocked;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void createList() {
+        isLocked = impl.equals("locked");
+        list = isLocked ? new TaskList(BenchmarkData.tasks(size)) : new ConcurrentTaskList(BenchmarkData.tasks(size));
+        next = 0;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean write() {
+        if (isLocked) {
+            synchronized (list) {
+                return toggle();
+            }
+        }
+        return toggle();
+    }
+
+    private boolean toggle() {
+        int index = list.size() - 1 - (next++ & 63);
+        return list.markAsDone(index) || list.unmark(index);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public String list() {
+        if (isLocked) {
+            synchronized (list) {
+                return list.listTasks();
+            }
+        }
+        return list.listTasks();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int find() {
+        if (isLocked) {
+            synchronized (list) {
+                return list.find("project meeting").size();
+            }
+        }
+        return list.find("project meeting").size();
+    }
+}
@@ -0,0 +1,60 @@
+package exactly;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * "on" and conflict queries over a year of timed events, answered from the interval
+ * index and by scanning every event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventQueryBenchmark {
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 15);
+
+    @Param({"100000", "500000"})
+    public int size;
+
+    private TaskList list;
+    private Event probe;
+
+    @Setup(Level.Trial)
+    public void createList() {
+        list = new TaskList(BenchmarkData.timedEvents(size));
+        probe = (Event) list.get(size / 2);
+    }
+
+    @Benchmark
+    public List<Task> onIndexed() {
+        return list.eventsBetween(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay());
+    }
+
+    @Benchmark
+    public List<Task> onScan() {
+        LocalDateTime from = DAY.atStartOfDay();
+        LocalDateTime to = DAY.plusDays(1).atStartOfDay();
+        return list.getTasks().stream()
+                .map(t -> (Event) t)
+                .filter(e -> e.start.isBefore(to) && e.end.isAfter(from))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Task> conflictsIndexed() {
+        return list.conflicts(probe);
+    }
+}
@@ -0,0 +1,74 @@
+package exactly;
+
+import java.lang.ref.Reference;
+import java.util.Random;
+
+/**
+ * Prints the heap taken by a plain and a compact TaskList of the same tasks.
+ *
+ * Not a JMH benchmark: it fills each list, forces a few collections and reads the heap
+ * in use, which is close enough to what JOL would report for structures this large.
+ * Run with {@code java -cp build/libs/<project>-jmh.jar exactly.FootprintReport [tasks]},
+ * giving the JVM enough heap for the plain list.
+ */
+public final class FootprintReport {
+    private static final String[] WORDS = {
+        "read", "book", "return", "project", "meeting", "submit", "report", "call", "mum",
+        "buy", "groceries", "finish", "assignment", "team", "lunch", "review", "code", "gym"
+    };
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%,d tasks%n", count);
+        for (boolean isRepeated: new boolean[] {false, true}) {
+            String kind = isRepeated ? "repeated descriptions" : "unique descriptions";
+            long plain = measure(new TaskList(), count, isRepeated);
+            long compact = measure(new CompactTaskList(), count, isRepeated);
+            System.out.printf("  %-22s plain %,6d MB (%,4d B/task)   compact %,6d MB (%,4d B/task)%n", kind,
+                    plain >> 20, plain / count, compact >> 20, compact / count);
+        }
+    }
+
+    /** Return the bytes of heap the list holds once filled with the generated tasks. */
+    private static long measure(TaskList list, int count, boolean isRepeated) {
+        long before = usedHeap();
+        Random random = new Random(count);
+        for (int i = 0; i < count; i++) {
+            list.add(task(random, i, isRepeated));
+        }
+        long after = usedHeap();
+        Reference.reachabilityFence(list);
+        return after - before;
+    }
+
+    // Same mix as BenchmarkData, built one at a time so no other list holds the tasks
+    private static Task task(Random random, int i, boolean isRepeated) {
+        String desc = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                + (isRepeated ? "" : " " + i);
+        Task task;
+        switch (random.nextInt(4)) {
+        case 0:
+            task = new Deadline(desc, "2025-" + String.format("%02d", 1 + random.nextInt(12))
+                    + "-" + String.format("%02d", 1 + random.nextInt(28)));
+            break;
+        case 1:
+            task = new Event(desc, "Mon 2pm", "4pm");
+            break;
+        default:
+            task = new Todo(desc);
+        }
+        if (random.nextInt(3) == 0) task.markAsDone();
+        return task;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,67 @@
+package exactly;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of making one mark durable: a full snapshot for the text and binary formats,
+ * a flag flip in the mapped file for the slot format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarkPersistenceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"TEXT", "BINARY", "SLOTS"})
+    public Storage.Format format;
+
+    private Path dir;
+    private Storage storage;
+    private List<Task> tasks;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createDataFile() throws IOException {
+        dir = Files.createTempDirectory("exactly-bench");
+        String path = dir.resolve("tasks.dat").toString();
+        new Storage(path, format, false).save(BenchmarkData.tasks(size));
+        storage = new Storage(path, format, false);
+        tasks = storage.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        storage.close();
+        BenchmarkData.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void mark() {
+        int index = next;
+        next = (next + 1) % size;
+        Task task = tasks.get(index);
+        if (task.isDone) {
+            task.unmark();
+        } else {
+            task.markAsDone();
+        }
+        storage.logMark(index, task.isDone);
+        if (format != Storage.Format.SLOTS) storage.save(tasks);
+    }
+}
@@ -0,0 +1,39 @@
+package exactly;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of timing one command, with metrics enabled and disabled, and of recording
+ * from several threads into the same histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+    private final Metrics enabled = new Metrics(true);
+    private final Metrics disabled = new Metrics(false);
+
+    @Benchmark
+    public void timeCommandEnabled() {
+        enabled.recordCommand(Command.Type.LIST, enabled.start());
+    }
+
+    @Benchmark
+    public void timeCommandDisabled() {
+        disabled.recordCommand(Command.Type.LIST, disabled.start());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timeCommandEnabledContended() {
+        enabled.recordCommand(Command.Type.LIST, enabled.start());
+    }
+}
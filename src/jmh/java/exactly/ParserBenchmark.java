@@ -0,0 +1,53 @@
+package exactly;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of turning one line of input into its parts, per command type: the one-pass
+ * {@link Parser#parse(String)} against the split-based parsing it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParserBenchmark {
+    @Param({
+        "list 2 --page-size 50",
+        "mark 42",
+        "todo read the collected works of someone",
+        "deadline submit quarterly report /by 2025-05-01",
+        "event project meeting /from 2025-06-15 14:00 /to 16:00",
+        "find project meeting",
+        "blah"
+    })
+    public String input;
+
+    @Benchmark
+    public Command parse() {
+        return Parser.parse(input);
+    }
+
+    @Benchmark
+    public String[] legacySplit() {
+        String[] tokens = input.split(" ", 2);
+        String rest = tokens.length < 2 ? "" : tokens[1].trim();
+        switch (tokens[0]) {
+        case "deadline":
+            return rest.split(" /by ");
+        case "event":
+            String[] fromParts = rest.split(" /from ");
+            return fromParts.length < 2 ? fromParts : fromParts[1].split(" /to ");
+        case "list":
+            return rest.isEmpty() ? tokens : rest.split("\\s+");
+        default:
+            return tokens;
+        }
+    }
+}
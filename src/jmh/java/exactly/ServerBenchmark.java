@@ -0,0 +1,94 @@
+package exactly;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Load generator for {@link ExactlyServer}: eight clients post commands over localhost.
+ *
+ * Each benchmark thread is one client with its own session. "SampleTime" reports the
+ * p50/p99 latency of a request; "Throughput" reports requests per millisecond, so
+ * commands/sec is that figure times {@code pipeline} times 1000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class ServerBenchmark {
+    // Mutations that do not grow the list, so every iteration sees the same workload
+    private static final String[] COMMANDS = {"mark 1", "find project meeting", "unmark 1", "list 1 --page-size 10"};
+
+    @Param({"true", "false"})
+    public boolean shared;
+
+    @Param({"1", "16"})
+    public int pipeline;
+
+    private Path dir;
+    private ExactlyServer server;
+    private final AtomicInteger clients = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        dir = Files.createTempDirectory("exactly-bench");
+        BenchmarkData.writeDataFile(dir.resolve("exactly.txt"), 1000);
+        server = new ExactlyServer(dir.resolve("exactly.txt").toString(), 0, shared);
+        server.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stop();
+        BenchmarkData.deleteDirectory(dir);
+    }
+
+    /** One client connection and the request it keeps sending. */
+    @State(Scope.Thread)
+    public static class Client {
+        private HttpClient http;
+        private HttpRequest request;
+
+        @Setup(Level.Trial)
+        public void connect(ServerBenchmark bench) throws IOException, InterruptedException {
+            http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < bench.pipeline; i++) {
+                body.append(COMMANDS[i % COMMANDS.length]).append("\n");
+            }
+            String session = "client" + bench.clients.incrementAndGet();
+            request = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + bench.server.getPort() + "/command?session=" + session))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+            // A fresh session starts empty; give "mark 1" something to mark
+            HttpRequest seed = HttpRequest.newBuilder(request.uri())
+                    .POST(HttpRequest.BodyPublishers.ofString("todo project meeting prep"))
+                    .build();
+            http.send(seed, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    @Benchmark
+    public String post(Client client) throws IOException, InterruptedException {
+        return client.http.send(client.request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
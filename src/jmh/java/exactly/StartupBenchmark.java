@@ -0,0 +1,77 @@
+package exactly;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from creating an Exactly until it can greet the user, with the data file read
+ * up front and in the background, and until the first command has been answered.
+ *
+ * Single-shot, since startup only happens once per process. For whole-process numbers,
+ * including JVM and JavaFX start, run the console or GUI with
+ * {@code -Dexactly.startupTiming=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class StartupBenchmark {
+    @Param({"10000", "500000"})
+    public int size;
+
+    private Path dir;
+    private Exactly exactly;
+
+    @Setup(Level.Trial)
+    public void createDataFile() throws IOException {
+        dir = Files.createTempDirectory("exactly-bench");
+        BenchmarkData.writeDataFile(dir.resolve("exactly.txt"), size);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        if (exactly != null) {
+            exactly.close();
+            exactly = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        BenchmarkData.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public String welcomeEager() {
+        exactly = new Exactly(dir.resolve("exactly.txt").toString(), true, false);
+        return exactly.getWelcomeMessage();
+    }
+
+    @Benchmark
+    public String welcomeBackground() {
+        exactly = new Exactly(dir.resolve("exactly.txt").toString(), true, true);
+        return exactly.getWelcomeMessage();
+    }
+
+    @Benchmark
+    public String firstResponseBackground() {
+        exactly = new Exactly(dir.resolve("exactly.txt").toString(), true, true);
+        return exactly.getResponse("list 1");
+    }
+}
@@ -0,0 +1,61 @@
+package exactly;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Full load and save of the data file at various sizes, in each storage format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"TEXT", "BINARY"})
+    public Storage.Format format;
+
+    private Path dir;
+    private Storage loadStorage;
+    private Storage saveStorage;
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void createDataFile() throws IOException {
+        dir = Files.createTempDirectory("exactly-bench");
+        tasks = BenchmarkData.tasks(size);
+        loadStorage = new Storage(dir.resolve("load.dat").toString(), format, false);
+        loadStorage.save(tasks);
+        saveStorage = new Storage(dir.resolve("save.dat").toString(), format, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        BenchmarkData.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public List<Task> load() {
+        return loadStorage.load();
+    }
+
+    @Benchmark
+    public void save() {
+        saveStorage.save(tasks);
+    }
+}
@@ -0,0 +1,105 @@
+package exactly;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * In-memory hot paths of {@link TaskList}: listing, keyword and due-date search and duplicate checks,
+ * each measured against the linear scan it replaces where one exists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskListBenchmark {
+    private static final LocalDate DUE = LocalDate.of(2019, 12, 2);
+    private static final LocalDate WEEK_START = LocalDate.of(2025, 5, 1);
+    private static final LocalDate WEEK_END = LocalDate.of(2025, 5, 7);
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"project meeting", "gym"})
+    public String keyword;
+
+    private TaskList list;
+    private Task present;
+    private Task absent;
+
+    @Setup(Level.Trial)
+    public void createList() {
+        list = new TaskList(BenchmarkData.tasks(size));
+        present = list.get(size / 2);
+        absent = new Todo("not in the list");
+    }
+
+    @Benchmark
+    public String listTasks() {
+        return list.listTasks();
+    }
+
+    // One row changes between listings, so only that row is rendered again
+    @Benchmark
+    public String listTasksAfterMark() {
+        int last = size - 1;
+        if (!list.markAsDone(last)) {
+            list.unmark(last);
+        }
+        return list.listTasks();
+    }
+
+    // A fresh task each time, so this measures rendering rather than the cache
+    @Benchmark
+    public String renderDeadline() {
+        return new Deadline("return book", DUE).toString();
+    }
+
+    @Benchmark
+    public List<Task> findIndexed() {
+        return list.find(keyword);
+    }
+
+    @Benchmark
+    public List<Task> findScan() {
+        return list.getTasks().stream()
+                .filter(t -> t.description.contains(keyword))
+                .collect(Collectors.toList());
+    }
+
+    // The generated deadlines spread over 2025, so a week holds about 2% of them
+    @Benchmark
+    public List<Task> dueIndexed() {
+        return list.dueBetween(WEEK_START, WEEK_END);
+    }
+
+    @Benchmark
+    public List<Task> dueScan() {
+        return list.getTasks().stream()
+                .filter(t -> t instanceof Deadline)
+                .filter(t -> !((Deadline) t).by.isBefore(WEEK_START) && !((Deadline) t).by.isAfter(WEEK_END))
+                .sorted(Comparator.comparing(t -> ((Deadline) t).by))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public boolean duplicateIndexed() {
+        return list.contains(present) & list.contains(absent);
+    }
+
+    @Benchmark
+    public boolean duplicateScan() {
+        return list.getTasks().contains(present) & list.getTasks().contains(absent);
+    }
+}
@@ -0,0 +1,111 @@
+package exactly;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Writes task snapshots on a single background thread, coalescing bursts.
+ *
+ * Callers hand over a copy of the list and return immediately. If a newer snapshot
+ * arrives before the previous one has started writing, only the newer one is written,
+ * so a burst of mutations costs one save. {@link #flush()} blocks until everything
+ * submitted so far is on disk.
+ */
+class BackgroundSaver {
+    /** Notified once a submitted snapshot has been written, or has failed to. */
+    interface Callback {
+        void saved(boolean isSuccess);
+    }
+
+    private final Predicate < List < Task > > writer;
+    private ExecutorService executor;
+    private List < Task > pending;
+    private List < Callback > callbacks = new ArrayList < > ();
+    private long requested;
+    private long written;
+
+    /**
+     * Create a saver that writes snapshots with the given function.
+     *
+     * @param writer writes one snapshot and reports whether it succeeded
+     */
+    public BackgroundSaver(Predicate < List < Task > > writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Queue a snapshot for writing, replacing any snapshot that has not started yet.
+     *
+     * @param snapshot a list the caller will not modify afterwards
+     * @param callback run on the writer thread once this snapshot (or a newer one) is written; may be null
+     */
+    public synchronized void submit(List < Task > snapshot, Callback callback) {
+        boolean isIdle = pending == null;
+        pending = snapshot;
+        if (callback != null) callbacks.add(callback);
+        requested++;
+        if (isIdle) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "exactly-saver");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        List < Task > snapshot;
+        List < Callback > toNotify;
+        long generation;
+        synchronized (this) {
+            snapshot = pending;
+            toNotify = callbacks;
+            generation = requested;
+            pending = null;
+            callbacks = new ArrayList < > ();
+        }
+        boolean isSuccess = writer.test(snapshot);
+        for (Callback c: toNotify) {
+            c.saved(isSuccess);
+        }
+        synchronized (this) {
+            written = generation;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Block until every snapshot submitted so far has been written.
+     */
+    public synchronized void flush() {
+        long target = requested;
+        boolean isInterrupted = false;
+        while (written < target) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Flush outstanding snapshots and stop the writer thread.
+     */
+    public void close() {
+        flush();
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+}
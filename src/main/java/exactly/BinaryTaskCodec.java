@@ -0,0 +1,468 @@
+package exactly;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary encoding of a task list.
+ *
+ * Layout: the magic bytes "EXTK", a one-byte format version, an int task count and an
+ * int CRC32C of the version and count. Then come framed blocks, each a varint length,
+ * the bytes and an int CRC32C of those bytes.
+ *
+ * The string table holds each distinct description and event time once, as
+ * varint-length-prefixed UTF-8. Its first block holds the number of strings, and each
+ * following block a varint count and that many strings, until all have been read, so
+ * that no block exceeds {@link #MAX_BLOCK}. A save that would need a larger block fails.
+ *
+ * One block per task follows. A record starts with a flag byte (task type in the low
+ * bits, done state in the top bit) and the varint table index of its description.
+ * Deadlines add their due date as a zigzag varint epoch day; events add the table
+ * indexes of their from/to strings and, when their times could be parsed (flag bit
+ * 0x40), start and end as zigzag varint epoch minutes, so loading does not parse them
+ * again. A record whose checksum does not match is skipped and reported through
+ * {@link #damagedRecords()}; the length lets reading carry on with the next one.
+ */
+class BinaryTaskCodec {
+    static final byte[] MAGIC = {'E', 'X', 'T', 'K'};
+    static final int VERSION = 1;
+    /** Longest framed block a reader accepts. */
+    static final int MAX_BLOCK = 1 << 26;
+
+    private static final int TODO = 0;
+    private static final int DEADLINE = 1;
+    private static final int EVENT = 2;
+    private static final int TYPE_MASK = 0x0F;
+    private static final int TIMED = 0x40;
+    private static final int DONE = 0x80;
+
+    private final StringDictionary strings;
+    private final int maxBlock;
+    private final CRC32C crc = new CRC32C();
+    private final Block block = new Block();
+    private final BlockInput blockInput = new BlockInput();
+    private final DataInputStream blockIn = new DataInputStream(blockInput);
+    private final List < String > damaged = new ArrayList < > ();
+    private byte[] buffer = new byte[256];
+    // String table of the file being read
+    private String[] table;
+    private BitSet referenced;
+    // Whether the last framed block ran into the end of the file
+    private boolean isCutShort;
+
+    /** Create a codec whose loaded tasks each get their own strings. */
+    public BinaryTaskCodec() {
+        this(null);
+    }
+
+    /**
+     * Create a codec that shares the loaded strings through a dictionary.
+     *
+     * @param strings the dictionary to intern text into, or null to not intern
+     */
+    public BinaryTaskCodec(StringDictionary strings) {
+        this(strings, MAX_BLOCK);
+    }
+
+    /**
+     * Create a codec that writes blocks of at most the given size, e.g. to test the limit.
+     *
+     * @param strings  the dictionary to intern text into, or null to not intern
+     * @param maxBlock the largest block to write, at most {@link #MAX_BLOCK}
+     */
+    BinaryTaskCodec(StringDictionary strings, int maxBlock) {
+        assert maxBlock > 0 && maxBlock <= MAX_BLOCK: "Block limit must be positive and readable";
+        this.strings = strings;
+        this.maxBlock = maxBlock;
+    }
+
+    /**
+     * Write the header, the string table and every task.
+     *
+     * @param tasks the tasks to encode
+     * @param out   the destination; not closed by this method
+     * @throws IOException if writing fails, or a task is too large to fit in one block
+     */
+    public void write(List < Task > tasks, DataOutputStream out) throws IOException {
+        StringDictionary ids = new StringDictionary();
+        for (Task t: tasks) {
+            ids.acquire(t.description);
+            if (t instanceof Event) {
+                ids.acquire(((Event) t).from);
+                ids.acquire(((Event) t).to);
+            }
+        }
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(tasks.size());
+        out.writeInt(headerChecksum(VERSION, tasks.size()));
+        DataOutputStream record = new DataOutputStream(block);
+        writeVarInt(record, ids.size());
+        writeBlock(out);
+        writeTable(ids, out, record);
+        for (Task t: tasks) {
+            int done = t.isDone ? DONE : 0;
+            if (t instanceof Deadline) {
+                record.writeByte(DEADLINE | done);
+                writeVarInt(record, ids.idOf(t.description));
+                writeVarLong(record, ((Deadline) t).by.toEpochDay());
+            } else if (t instanceof Event) {
+                Event e = (Event) t;
+                record.writeByte(EVENT | done | (e.isTimed() ? TIMED : 0));
+                writeVarInt(record, ids.idOf(t.description));
+                writeVarInt(record, ids.idOf(e.from));
+                writeVarInt(record, ids.idOf(e.to));
+                if (e.isTimed()) {
+                    writeVarLong(record, minute(e.start));
+                    writeVarLong(record, minute(e.end) - minute(e.start));
+                }
+            } else {
+                record.writeByte(TODO | done);
+                writeVarInt(record, ids.idOf(t.description));
+            }
+            writeBlock(out);
+        }
+    }
+
+    /** Write the string table as blocks of whole strings, each within the block limit. */
+    private void writeTable(StringDictionary ids, DataOutputStream out, DataOutputStream record) throws IOException {
+        Block part = new Block();
+        DataOutputStream partOut = new DataOutputStream(part);
+        int count = 0;
+        for (int id = 0; id < ids.size(); id++) {
+            byte[] bytes = ids.get(id).getBytes(StandardCharsets.UTF_8);
+            // Leave room for the varint count and the string's own length prefix
+            if (count > 0 && part.size() + bytes.length + 10 > maxBlock) {
+                writeVarInt(record, count);
+                part.writeTo(record);
+                writeBlock(out);
+                part.reset();
+                count = 0;
+            }
+            writeVarInt(partOut, bytes.length);
+            partOut.write(bytes);
+            count++;
+        }
+        if (count > 0) {
+            writeVarInt(record, count);
+            part.writeTo(record);
+            writeBlock(out);
+        }
+    }
+
+    /** Write the bytes collected in the block with their length and checksum, then empty it. */
+    private void writeBlock(DataOutputStream out) throws IOException {
+        if (block.size() > maxBlock) {
+            // The reader would treat the block as damaged, so refuse to write it at all
+            throw new IOException("A task is too large to save (" + block.size() + " bytes)");
+        }
+        writeVarInt(out, block.size());
+        block.writeTo(out);
+        crc.reset();
+        crc.update(block.bytes(), 0, block.size());
+        out.writeInt((int) crc.getValue());
+        block.reset();
+    }
+
+    /**
+     * Read the header and every task. A truncated file yields the tasks read so far;
+     * damaged records are skipped and kept in {@link #damagedRecords()}.
+     *
+     * @param in    the source; not closed by this method
+     * @param tasks the list the decoded tasks are appended to
+     * @throws IOException if the header is invalid or reading fails
+     */
+    public void read(DataInputStream in, List < Task > tasks) throws IOException {
+        damaged.clear();
+        byte[] magic = new byte[MAGIC.length];
+        int version;
+        int count;
+        int stored;
+        try {
+            in.readFully(magic);
+            version = in.readUnsignedByte();
+            count = in.readInt();
+            stored = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Binary task file ends inside its header");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) throw new IOException("Not a binary task file");
+        }
+        if (version != VERSION) throw new IOException("Unsupported binary task file version " + version);
+        if (stored != headerChecksum(version, count)) throw new IOException("Binary task file header is damaged");
+        readRecords(in, count, tasks);
+    }
+
+    /**
+     * Return the records skipped by the last {@link #read(DataInputStream, List)}, each as
+     * a line naming its position followed by its bytes in hex, so they can be kept
+     * somewhere instead of being lost.
+     *
+     * @return the skipped records, in file order
+     */
+    public List < String > damagedRecords() {
+        return damaged;
+    }
+
+    private void readRecords(DataInputStream in, int count, List < Task > tasks) throws IOException {
+        table = readTable(in);
+        if (table == null) {
+            // Without the table no record can be decoded; keep everything that follows
+            keepRest(in, "after string table");
+            System.out.println("Warning: Binary task file has a damaged string table.");
+            return;
+        }
+        referenced = new BitSet(table.length);
+        for (int i = 0; i < count; i++) {
+            String name = "record " + (i + 1) + " of " + count;
+            if (!readBlock(in, name)) {
+                if (isCutShort) {
+                    System.out.println("Warning: Binary task file ends after " + i + " of " + count + " tasks.");
+                    return;
+                }
+                continue;
+            }
+            try {
+                tasks.add(readTask(blockIn));
+            } catch (IOException | RuntimeException e) {
+                damaged.add(name + ": " + hex(blockInput.bytes(), blockInput.length()));
+                System.out.println("Warning: Skipping invalid " + name + " (" + e.getMessage() + ")");
+            }
+        }
+        // Records past the count in the header are only there if the count was damaged
+        keepRest(in, "after record " + count);
+    }
+
+    private void keepRest(DataInputStream in, String name) throws IOException {
+        byte[] rest = in.readAllBytes();
+        if (rest.length > 0) damaged.add(name + ": " + hex(rest, rest.length));
+    }
+
+    /**
+     * Read one framed block into the block input and check it. A block that is cut
+     * short or fails its checksum is added to the damaged records.
+     *
+     * @return true if the block is intact
+     */
+    private boolean readBlock(DataInputStream in, String name) throws IOException {
+        isCutShort = true;
+        int length;
+        try {
+            length = readVarInt(in);
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            length = -1;
+        }
+        if (length < 0 || length > MAX_BLOCK) {
+            // The length itself is damaged, so the next record cannot be found
+            keepRest(in, name + " onwards");
+            System.out.println("Warning: Binary task file has a damaged length at " + name + ".");
+            return false;
+        }
+        byte[] bytes = blockInput.prepare(length);
+        int read = in.readNBytes(bytes, 0, length);
+        int stored = 0;
+        int storedBytes = 0;
+        for (; storedBytes < 4; storedBytes++) {
+            int b = in.read();
+            if (b < 0) break;
+            stored = stored << 8 | b;
+        }
+        if (read < length || storedBytes < 4) {
+            damaged.add(name + " (cut short): " + hex(bytes, read));
+            return false;
+        }
+        isCutShort = false;
+        crc.reset();
+        crc.update(bytes, 0, length);
+        if ((int) crc.getValue() != stored) {
+            damaged.add(name + ": " + hex(bytes, length));
+            System.out.println("Warning: Skipping " + name + " with a checksum mismatch.");
+            return false;
+        }
+        return true;
+    }
+
+    private int headerChecksum(int version, int count) {
+        crc.reset();
+        crc.update(version);
+        crc.update(ByteBuffer.allocate(4).putInt(0, count).array());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Format bytes as hex, for keeping damaged data in a text quarantine file.
+     *
+     * @param bytes  the bytes
+     * @param length how many of them to format
+     * @return two lower-case hex digits per byte
+     */
+    static String hex(byte[] bytes, int length) {
+        StringBuilder sb = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            sb.append(Character.forDigit(bytes[i] >> 4 & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /** Read the string table from its blocks; null if any is damaged. */
+    private String[] readTable(DataInputStream in) throws IOException {
+        if (!readBlock(in, "string table")) return null;
+        int size = readVarInt(blockIn);
+        String[] read = new String[size];
+        int filled = 0;
+        while (filled < size) {
+            if (!readBlock(in, "string table from string " + (filled + 1))) return null;
+            int count = readVarInt(blockIn);
+            if (count <= 0 || count > size - filled) {
+                damaged.add("string table from string " + (filled + 1) + ": "
+                        + hex(blockInput.bytes(), blockInput.length()));
+                return null;
+            }
+            for (int i = 0; i < count; i++) {
+                String text = readString(blockIn);
+                read[filled++] = strings == null ? text : strings.intern(text);
+            }
+        }
+        return read;
+    }
+
+    /** Read a string as its index into the string table. */
+    private String readText(DataInputStream in) throws IOException {
+        int id = readVarInt(in);
+        if (id < 0 || id >= table.length) throw new IOException("String index " + id + " out of range");
+        if (strings != null && referenced.get(id)) {
+            strings.noteShared(table[id]);
+        }
+        referenced.set(id);
+        return table[id];
+    }
+
+    private Task readTask(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        String description = readText(in);
+        Task task;
+        switch (flags & TYPE_MASK) {
+        case TODO:
+            task = new Todo(description);
+            break;
+        case DEADLINE:
+            task = new Deadline(description, LocalDate.ofEpochDay(readVarLong(in)));
+            break;
+        case EVENT:
+            String from = readText(in);
+            String to = readText(in);
+            if ((flags & TIMED) != 0) {
+                long start = readVarLong(in);
+                long end = start + readVarLong(in);
+                task = new Event(description, from, to, time(start), time(end));
+            } else {
+                task = new Event(description, from, to, null, null);
+            }
+            break;
+        default:
+            throw new IOException("Unknown task type " + (flags & TYPE_MASK));
+        }
+        if ((flags & DONE) != 0) task.markAsDone();
+        return task;
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+        in.readFully(buffer, 0, length);
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static long minute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime time(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    // Zigzag keeps small negative values (dates before 1970) short
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("Malformed time");
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed length prefix");
+    }
+
+    /** Output buffer whose bytes can be checksummed without copying them. */
+    private static class Block extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    /** Input over one framed block, refilled for every record instead of allocated. */
+    private static class BlockInput extends ByteArrayInputStream {
+        BlockInput() {
+            super(new byte[256]);
+        }
+
+        /** Return a buffer for the next block of the given length and read from it next. */
+        byte[] prepare(int length) {
+            if (buf.length < length) buf = new byte[Math.max(length, buf.length * 2)];
+            pos = 0;
+            count = length;
+            mark = 0;
+            return buf;
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        int length() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package exactly;
+
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+
+/**
+ * List cell that renders a chat message through one recycled {@link DialogBox}.
+ */
+class ChatCell extends ListCell < ChatMessage > {
+    private final DialogBox box = new DialogBox();
+    private final Image userImage;
+    private final Image botImage;
+
+    /**
+     * Create a cell for the given chat list.
+     *
+     * @param list      the list view the cell belongs to
+     * @param userImage avatar for user messages
+     * @param botImage  avatar for Exactly's messages
+     */
+    ChatCell(ListView < ChatMessage > list, Image userImage, Image botImage) {
+        this.userImage = userImage;
+        this.botImage = botImage;
+        box.limitTextWidth(list.widthProperty());
+        // Let the cell follow the list's width so long messages wrap instead of scrolling sideways
+        setPrefWidth(0);
+    }
+
+    @Override
+    protected void updateItem(ChatMessage message, boolean isEmpty) {
+        super.updateItem(message, isEmpty);
+        setText(null);
+        if (isEmpty || message == null) {
+            setGraphic(null);
+        } else {
+            box.show(message.text, message.isUser ? userImage : botImage, message.isUser);
+            setGraphic(box);
+        }
+    }
+}
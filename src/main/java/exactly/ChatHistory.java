@@ -0,0 +1,112 @@
+package exactly;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Bounded window over the conversation shown in the GUI.
+ *
+ * Only the newest {@code window} messages are kept in memory; older ones are
+ * dropped or, if a spill file is configured, appended to it first. The evicted
+ * messages are handed to a background executor, which keeps one writer open on the
+ * spill file, so the FX thread never waits for the disk.
+ */
+class ChatHistory {
+    /** Messages kept on screen when no other window size is configured. */
+    static final int DEFAULT_WINDOW = 500;
+
+    private final ObservableList < ChatMessage > messages = FXCollections.observableArrayList();
+    private final int window;
+    private final Path spillFile;
+    private final Executor spiller;
+    // Only used on the spiller; null until the first message is spilled
+    private BufferedWriter out;
+
+    /**
+     * Create a history that keeps at most {@code window} messages.
+     *
+     * @param window    the number of messages to keep in memory
+     * @param spillFile file older messages are appended to, or null to drop them
+     * @param spiller   runs the writes to the spill file one at a time, in order
+     */
+    ChatHistory(int window, Path spillFile, Executor spiller) {
+        assert window > 0: "History window must be positive";
+        assert spillFile == null || spiller != null: "A spill file needs an executor to write it";
+        this.window = window;
+        this.spillFile = spillFile;
+        this.spiller = spiller;
+    }
+
+    /**
+     * Expose the messages currently in the window, for binding to a list view.
+     *
+     * @return the live, observable window of messages
+     */
+    ObservableList < ChatMessage > getMessages() {
+        return messages;
+    }
+
+    /**
+     * Append messages, evicting the oldest ones beyond the window.
+     *
+     * @param newMessages the messages to append, in order
+     */
+    void add(ChatMessage...newMessages) {
+        messages.addAll(newMessages);
+        int excess = messages.size() - window;
+        if (excess > 0) {
+            if (spillFile != null) {
+                List < ChatMessage > evicted = new ArrayList < > (messages.subList(0, excess));
+                spiller.execute(() -> spill(evicted));
+            }
+            messages.remove(0, excess);
+        }
+    }
+
+    /**
+     * Close the spill file once every message evicted so far has been written.
+     * Call before shutting the executor down.
+     */
+    void close() {
+        if (spillFile == null) return;
+        spiller.execute(() -> {
+            if (out == null) return;
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.out.println("Error saving chat history: " + e.getMessage());
+            }
+            out = null;
+        });
+    }
+
+    private void spill(List < ChatMessage > evicted) {
+        try {
+            if (out == null) {
+                Path parent = spillFile.toAbsolutePath().getParent();
+                if (parent != null) Files.createDirectories(parent);
+                out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (ChatMessage m: evicted) {
+                out.write(m.isUser ? "[user]\n" : "[exactly]\n");
+                out.write(m.text);
+                if (!m.text.endsWith("\n")) out.write("\n");
+            }
+            // Hand the batch to the OS, so a crash loses at most what is still queued
+            out.flush();
+        } catch (Exception e) {
+            System.out.println("Error saving chat history: " + e.getMessage());
+        }
+    }
+}
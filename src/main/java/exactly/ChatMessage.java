@@ -0,0 +1,21 @@
+package exactly;
+
+/**
+ * One entry in the chat history.
+ */
+class ChatMessage {
+    final String text;
+    final boolean isUser;
+
+    /**
+     * Create a chat entry.
+     *
+     * @param text   the message text
+     * @param isUser true if the user sent it, false if Exactly did
+     */
+    ChatMessage(String text, boolean isUser) {
+        assert text != null: "Message text must not be null";
+        this.text = text;
+        this.isUser = isUser;
+    }
+}
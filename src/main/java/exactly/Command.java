@@ -0,0 +1,45 @@
+package exactly;
+
+/**
+ * One parsed line of user input: what to do, and the slices of the line it applies to.
+ *
+ * Built by {@link Parser#parse(String)}. Every text field is already trimmed; fields a
+ * command does not use are empty, and flag values that were not given are null.
+ */
+class Command {
+    /** The commands Exactly understands, with the word that starts each one. */
+    enum Type {
+        BYE("bye"), LIST("list"), MARK("mark"), UNMARK("unmark"), TODO("todo"), DEADLINE("deadline"),
+        EVENT("event"), DELETE("delete"), FIND("find"), DUE("due"), ON("on"), CONFLICTS("conflicts"),
+        STATS("stats"), UNKNOWN(null);
+
+        final String keyword;
+
+        Type(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    final Type type;
+    /** Everything after the command word. */
+    final String args;
+    /** For deadlines and events: the text before the first flag. */
+    final String description;
+    /** The "/by", "/from" and "/to" values, or null if the flag was not given. */
+    final String by;
+    final String from;
+    final String to;
+    /** Whether a flag was given more than once. */
+    final boolean hasRepeatedFlag;
+
+    Command(Type type, String args, String description, String by, String from, String to,
+            boolean hasRepeatedFlag) {
+        this.type = type;
+        this.args = args;
+        this.description = description;
+        this.by = by;
+        this.from = from;
+        this.to = to;
+        this.hasRepeatedFlag = hasRepeatedFlag;
+    }
+}
@@ -0,0 +1,510 @@
+package exactly;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * A TaskList that keeps its tasks as parallel primitive arrays instead of objects,
+ * for lists of millions of tasks.
+ *
+ * A task is a type byte, a done bit, a dictionary id for its description and, for
+ * deadlines and events, two ints: the due epoch day, or the ids of the "/from" and
+ * "/to" texts. Timed events also keep their start and end as epoch minutes. Text goes
+ * through a {@link StringDictionary}, so repeated descriptions are stored once. That is
+ * around 24 bytes per task plus each distinct string once, against 250-300 bytes per
+ * task for the objects and indexes of a plain TaskList.
+ *
+ * {@link #get(int)} and {@link #getTasks()} hand out Task views built from the arrays
+ * on demand. A view is a copy: marking it does not change the list, so callers go
+ * through {@link #markAsDone(int)} and {@link #unmark(int)} as Exactly already does.
+ *
+ * The indexes are kept over row numbers rather than objects. Rows with the same
+ * description are chained from the description's dictionary id, so a duplicate check
+ * only visits tasks with that description. Deadline rows are grouped by due day and
+ * timed event rows by start minute, and keyword search goes through the dictionary's
+ * trigram index. Removing tasks renumbers the rows behind them, so it rebuilds the
+ * indexes, at about the cost of moving the rows. Dates must lie within about 4,000
+ * years of 1970 to fit the int columns.
+ */
+class CompactTaskList extends TaskList {
+    /** System property that makes Exactly use this backend when set to "true". */
+    static final String PROPERTY = "exactly.compactTasks";
+
+    private static final byte TODO = 0;
+    private static final byte DEADLINE = 1;
+    private static final byte EVENT = 2;
+    // Start and end of an event whose times could not be parsed
+    private static final int NO_TIME = Integer.MIN_VALUE;
+
+    private final StringDictionary strings;
+    private final List < Task > view = new View();
+    private byte[] types = new byte[16];
+    private int[] descriptions = new int[16];
+    // Deadline: due epoch day. Event: id of the "/from" text
+    private int[] firsts = new int[16];
+    // Event: id of the "/to" text
+    private int[] seconds = new int[16];
+    // Epoch minutes of timed events; null until the first timed event arrives
+    private int[] starts;
+    private int[] ends;
+    // Last row with each description id, and per row the previous row with the same description, or -1
+    private int[] lastRow = new int[16];
+    private int[] previousRow = new int[16];
+    // Deadline rows by due day and timed event rows by start minute, each in row order
+    private final TreeMap < Integer, Rows > dueDays = new TreeMap < > ();
+    private final TreeMap < Integer, Rows > eventStarts = new TreeMap < > ();
+    // Longest timed event, so an overlap query knows how far before its range to look
+    private long longestEvent;
+    private final BitSet done = new BitSet();
+    private int size;
+    private int modCount;
+    private String listing;
+    private int listingModCount = -1;
+
+    /** Constructs an empty CompactTaskList. */
+    public CompactTaskList() {
+        this(new ArrayList < > ());
+    }
+
+    /**
+     * Constructs a CompactTaskList holding the given tasks. The list is only read, so
+     * the caller may drop it afterwards to free the task objects.
+     *
+     * @param tasks the initial tasks
+     */
+    public CompactTaskList(List < Task > tasks) {
+        this(tasks, new StringDictionary());
+    }
+
+    /**
+     * Constructs a CompactTaskList holding the given tasks, encoding their text with a
+     * dictionary the tasks were loaded through.
+     *
+     * @param tasks   the initial tasks
+     * @param strings the dictionary to encode text with; the list takes it over
+     */
+    public CompactTaskList(List < Task > tasks, StringDictionary strings) {
+        super();
+        assert tasks != null: "Initial task list must not be null";
+        assert strings != null: "Dictionary must not be null";
+        this.strings = strings;
+        Arrays.fill(lastRow, -1);
+        grow(tasks.size());
+        for (Task t: tasks) {
+            append(t);
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        assert task != null: "Task to add must not be null";
+        append(task);
+        modCount++;
+    }
+
+    @Override
+    public void add(Task...tasksToAdd) {
+        assert tasksToAdd != null: "Tasks array must not be null";
+        for (Task t: tasksToAdd) {
+            add(t);
+        }
+    }
+
+    @Override
+    public Task remove(int index) {
+        Objects.checkIndex(index, size);
+        BitSet selected = new BitSet();
+        selected.set(index);
+        return removeAll(selected).get(0);
+    }
+
+    @Override
+    public boolean markAsDone(int index) {
+        Objects.checkIndex(index, size);
+        if (done.get(index)) return false;
+        done.set(index);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean unmark(int index) {
+        Objects.checkIndex(index, size);
+        if (!done.get(index)) return false;
+        done.clear(index);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public int markAll(BitSet selected, boolean isDone) {
+        assert selected.length() <= size: "Selection is past the end of the list";
+        int changed = 0;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            if (done.get(i) != isDone) {
+                done.set(i, isDone);
+                changed++;
+            }
+        }
+        if (changed > 0) modCount++;
+        return changed;
+    }
+
+    @Override
+    public List < Task > removeAll(BitSet selected) {
+        assert selected.length() <= size: "Selection is past the end of the list";
+        List < Task > removed = new ArrayList < > (selected.cardinality());
+        int first = selected.nextSetBit(0);
+        if (first < 0) return removed;
+        int kept = first;
+        for (int i = first; i < size; i++) {
+            if (selected.get(i)) {
+                removed.add(task(i));
+                release(i);
+                continue;
+            }
+            types[kept] = types[i];
+            descriptions[kept] = descriptions[i];
+            firsts[kept] = firsts[i];
+            seconds[kept] = seconds[i];
+            if (starts != null) {
+                starts[kept] = starts[i];
+                ends[kept] = ends[i];
+            }
+            done.set(kept, done.get(i));
+            kept++;
+        }
+        done.clear(kept, size);
+        size = kept;
+        reindex();
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public BitSet doneTasks() {
+        return done.get(0, size);
+    }
+
+    @Override
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Check whether an equal task is already in this list.
+     * Only visits the rows with the same description.
+     */
+    @Override
+    public boolean contains(Task task) {
+        int description = strings.idOf(task.description);
+        if (description < 0 || strings.uses(description) == 0) return false;
+        byte type = typeOf(task);
+        int first = 0;
+        int second = 0;
+        if (type == DEADLINE) {
+            first = epochDay((Deadline) task);
+        } else if (type == EVENT) {
+            first = strings.idOf(((Event) task).from);
+            second = strings.idOf(((Event) task).to);
+            if (first < 0 || second < 0) return false;
+        }
+        return indexOf(type, description, first, second, -1) >= 0;
+    }
+
+    @Override
+    public List < Task > find(String keyword) {
+        BitSet matching = strings.containing(keyword);
+        int[] rows = new int[16];
+        int count = 0;
+        for (int id = matching.nextSetBit(0); id >= 0 && id < lastRow.length; id = matching.nextSetBit(id + 1)) {
+            for (int i = lastRow[id]; i >= 0; i = previousRow[i]) {
+                if (count == rows.length) rows = Arrays.copyOf(rows, count * 2);
+                rows[count++] = i;
+            }
+        }
+        Arrays.sort(rows, 0, count);
+        List < Task > matches = new ArrayList < > (count);
+        for (int k = 0; k < count; k++) {
+            matches.add(task(rows[k]));
+        }
+        return matches;
+    }
+
+    @Override
+    public List < Task > dueBetween(LocalDate from, LocalDate to) {
+        List < Task > due = new ArrayList < > ();
+        long fromDay = Math.max(from.toEpochDay(), Integer.MIN_VALUE);
+        long toDay = Math.min(to.toEpochDay(), Integer.MAX_VALUE);
+        if (fromDay > toDay) return due;
+        for (Rows rows: dueDays.subMap((int) fromDay, true, (int) toDay, true).values()) {
+            for (int k = 0; k < rows.size; k++) {
+                due.add(task(rows.rows[k]));
+            }
+        }
+        return due;
+    }
+
+    @Override
+    public List < Task > eventsBetween(LocalDateTime from, LocalDateTime to) {
+        return overlapping(epochMinute(from), epochMinute(to), -1);
+    }
+
+    @Override
+    public List < Task > conflicts(Event event) {
+        if (!event.isTimed()) return new ArrayList < > ();
+        // Views are copies, so find the event's own row by its content
+        int description = strings.idOf(event.description);
+        int self = description < 0 ? -1 : indexOf(EVENT, description, strings.idOf(event.from),
+                strings.idOf(event.to), -1);
+        return overlapping(epochMinute(event.start), epochMinute(event.end), self);
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        return task(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return a read-only view of the list whose elements are built on access.
+     *
+     * @return the tasks, in list order
+     */
+    @Override
+    public List < Task > getTasks() {
+        return view;
+    }
+
+    @Override
+    public String listTasks() {
+        if (listing != null && listingModCount == modCount) {
+            return listing;
+        }
+        listing = listing(view);
+        listingModCount = modCount;
+        return listing;
+    }
+
+    @Override
+    public String listPage(int page, int pageSize) {
+        return listPage(view, page, pageSize);
+    }
+
+    @Override
+    public int pageCount(int pageSize) {
+        return pageCount(size, pageSize);
+    }
+
+    @Override
+    public Stream < String > rows() {
+        return rows(view);
+    }
+
+    /**
+     * Report how many distinct strings the list's descriptions and event times share.
+     *
+     * @return the dictionary size
+     */
+    public int distinctStrings() {
+        return strings.size();
+    }
+
+    private void append(Task task) {
+        byte type = typeOf(task);
+        // Work out every column first, so a date that does not fit leaves the list untouched
+        int first = 0;
+        int start = NO_TIME;
+        int end = NO_TIME;
+        if (type == DEADLINE) {
+            first = epochDay((Deadline) task);
+        } else if (type == EVENT && ((Event) task).isTimed()) {
+            start = minute(((Event) task).start);
+            end = minute(((Event) task).end);
+        }
+        grow(size + 1);
+        int i = size;
+        types[i] = type;
+        descriptions[i] = strings.acquire(task.description);
+        if (type == EVENT) {
+            Event event = (Event) task;
+            first = strings.acquire(event.from);
+            seconds[i] = strings.acquire(event.to);
+            if (start != NO_TIME && starts == null) {
+                starts = new int[types.length];
+                ends = new int[types.length];
+                Arrays.fill(starts, NO_TIME);
+                Arrays.fill(ends, NO_TIME);
+            }
+        } else {
+            seconds[i] = 0;
+        }
+        firsts[i] = first;
+        if (starts != null) {
+            starts[i] = start;
+            ends[i] = end;
+        }
+        done.set(i, task.isDone);
+        link(i);
+        size++;
+    }
+
+    /** Add a row to the description chains and the date indexes; rows must be linked in order. */
+    private void link(int i) {
+        int description = descriptions[i];
+        if (description >= lastRow.length) {
+            int old = lastRow.length;
+            lastRow = Arrays.copyOf(lastRow, Math.max(description + 1, old * 2));
+            Arrays.fill(lastRow, old, lastRow.length, -1);
+        }
+        previousRow[i] = lastRow[description];
+        lastRow[description] = i;
+        if (types[i] == DEADLINE) {
+            dueDays.computeIfAbsent(firsts[i], day -> new Rows()).add(i);
+        } else if (starts != null && starts[i] != NO_TIME) {
+            eventStarts.computeIfAbsent(starts[i], minute -> new Rows()).add(i);
+            longestEvent = Math.max(longestEvent, (long) ends[i] - starts[i]);
+        }
+    }
+
+    /** Rebuild every index after rows have moved. */
+    private void reindex() {
+        Arrays.fill(lastRow, -1);
+        dueDays.clear();
+        eventStarts.clear();
+        longestEvent = 0;
+        for (int i = 0; i < size; i++) {
+            link(i);
+        }
+    }
+
+    private void release(int i) {
+        strings.release(descriptions[i]);
+        if (types[i] == EVENT) {
+            strings.release(firsts[i]);
+            strings.release(seconds[i]);
+        }
+    }
+
+    private void grow(int capacity) {
+        if (capacity <= types.length) return;
+        int length = Math.max(capacity, types.length * 2);
+        types = Arrays.copyOf(types, length);
+        descriptions = Arrays.copyOf(descriptions, length);
+        firsts = Arrays.copyOf(firsts, length);
+        seconds = Arrays.copyOf(seconds, length);
+        previousRow = Arrays.copyOf(previousRow, length);
+        if (starts != null) {
+            int old = starts.length;
+            starts = Arrays.copyOf(starts, length);
+            ends = Arrays.copyOf(ends, length);
+            Arrays.fill(starts, old, length, NO_TIME);
+            Arrays.fill(ends, old, length, NO_TIME);
+        }
+    }
+
+    /** Return the last row other than skip with the given content, or -1. */
+    private int indexOf(byte type, int description, int first, int second, int skip) {
+        if (description < 0 || description >= lastRow.length) return -1;
+        for (int i = lastRow[description]; i >= 0; i = previousRow[i]) {
+            if (types[i] != type || i == skip) continue;
+            if (type == TODO || firsts[i] == first && (type == DEADLINE || seconds[i] == second)) return i;
+        }
+        return -1;
+    }
+
+    /** Return the timed events overlapping [fromMinute, toMinute), by start and then by row. */
+    private List < Task > overlapping(long fromMinute, long toMinute, int skip) {
+        List < Task > overlapping = new ArrayList < > ();
+        // An event can only reach the range if it starts less than the longest event before it
+        long lowest = Math.max(fromMinute - longestEvent, Integer.MIN_VALUE);
+        long highest = Math.min(toMinute, Integer.MAX_VALUE);
+        if (fromMinute >= toMinute || lowest >= highest) return overlapping;
+        for (Rows rows: eventStarts.subMap((int) lowest, true, (int) highest, false).values()) {
+            for (int k = 0; k < rows.size; k++) {
+                int i = rows.rows[k];
+                if (ends[i] > fromMinute && i != skip) overlapping.add(task(i));
+            }
+        }
+        return overlapping;
+    }
+
+    /** Build the Task view of a row. */
+    private Task task(int i) {
+        String description = strings.get(descriptions[i]);
+        Task task;
+        if (types[i] == DEADLINE) {
+            task = new Deadline(description, LocalDate.ofEpochDay(firsts[i]));
+        } else if (types[i] == EVENT) {
+            boolean isTimed = starts != null && starts[i] != NO_TIME;
+            task = new Event(description, strings.get(firsts[i]), strings.get(seconds[i]),
+                    isTimed ? time(starts[i]) : null, isTimed ? time(ends[i]) : null);
+        } else {
+            task = new Todo(description);
+        }
+        if (done.get(i)) task.markAsDone();
+        return task;
+    }
+
+    private static byte typeOf(Task task) {
+        if (task instanceof Deadline) return DEADLINE;
+        if (task instanceof Event) return EVENT;
+        assert task instanceof Todo: "Unknown task type " + task.getClass();
+        return TODO;
+    }
+
+    private static int epochDay(Deadline deadline) {
+        return Math.toIntExact(deadline.by.toEpochDay());
+    }
+
+    private static int minute(LocalDateTime time) {
+        return Math.toIntExact(epochMinute(time));
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime time(int minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /** Growable array of row numbers, in ascending order. */
+    private static class Rows {
+        int[] rows = new int[2];
+        int size;
+
+        void add(int row) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+    }
+
+    /** Read-only list over the rows, building each task as it is read. */
+    private class View extends AbstractList < Task > implements RandomAccess {
+        @Override
+        public Task get(int index) {
+            return CompactTaskList.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package exactly;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A TaskList that several front ends can share.
+ *
+ * Writes are serialised on the list's monitor and run against the same indexes as a
+ * plain TaskList. Listings are served from an immutable {@link Snapshot} that holds the
+ * tasks and their renderings at one point in time, so readers never lock, never see a
+ * half-applied change and are not disturbed by later mark/unmark calls. A snapshot is
+ * built by the first reader after a write, so a burst of writes costs one copy.
+ *
+ * A command that checks and then changes the list, e.g. "mark 3", runs its steps inside
+ * {@link #write(java.util.function.Supplier)}; a listing runs inside
+ * {@link #read(java.util.function.Supplier)}, which pins one snapshot for its whole run.
+ * Lookups such as {@link #find(String)} go to the live indexes under the lock instead, so
+ * they cost what they match rather than a copy of the list.
+ */
+class ConcurrentTaskList extends TaskList {
+    // Null whenever a write has happened since the last snapshot was taken
+    private volatile Snapshot snapshot;
+    // The snapshot a read on this thread is working from, if any
+    private final ThreadLocal < Snapshot > pinned = new ThreadLocal < > ();
+
+    /** Constructs an empty ConcurrentTaskList. */
+    public ConcurrentTaskList() {
+        super();
+    }
+
+    /**
+     * Constructs a ConcurrentTaskList that takes ownership of the given tasks.
+     *
+     * @param tasks the initial tasks; the caller must not use the list afterwards
+     */
+    public ConcurrentTaskList(List < Task > tasks) {
+        super(tasks);
+    }
+
+    /**
+     * Return a consistent view of the list as of the most recent write.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        Snapshot s = pinned.get();
+        if (s != null) return s;
+        s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null) {
+                    s = new Snapshot(super.getTasks(), super.getModCount());
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Run a query against one snapshot, without locking.
+     * Position reads such as {@link #size()} and {@link #get(int)} inside it agree with the listings.
+     *
+     * @param query the query; it must not change the list
+     * @return the query's result
+     */
+    @Override
+    public < T > T read(Supplier < T > query) {
+        if (pinned.get() != null) return query.get();
+        pinned.set(snapshot());
+        try {
+            return query.get();
+        } finally {
+            pinned.remove();
+        }
+    }
+
+    @Override
+    List < Task > writerView() {
+        assert Thread.holdsLock(this): "Only a writer may use the live list";
+        return super.getTasks();
+    }
+
+    @Override
+    public synchronized void add(Task task) {
+        super.add(task);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized void add(Task...tasksToAdd) {
+        super.add(tasksToAdd);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized Task remove(int index) {
+        Task removed = super.remove(index);
+        snapshot = null;
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean markAsDone(int index) {
+        boolean isChanged = super.markAsDone(index);
+        if (isChanged) snapshot = null;
+        return isChanged;
+    }
+
+    @Override
+    public synchronized boolean unmark(int index) {
+        boolean isChanged = super.unmark(index);
+        if (isChanged) snapshot = null;
+        return isChanged;
+    }
+
+    @Override
+    public synchronized int markAll(BitSet selected, boolean isDone) {
+        int changed = super.markAll(selected, isDone);
+        if (changed > 0) snapshot = null;
+        return changed;
+    }
+
+    @Override
+    public synchronized List < Task > removeAll(BitSet selected) {
+        List < Task > removed = super.removeAll(selected);
+        if (!removed.isEmpty()) snapshot = null;
+        return removed;
+    }
+
+    // Point reads go to the live list under the lock, so a writer can read back its own change cheaply
+
+    @Override
+    public synchronized int getModCount() {
+        return super.getModCount();
+    }
+
+    @Override
+    public synchronized boolean contains(Task task) {
+        return super.contains(task);
+    }
+
+    @Override
+    public synchronized List < Task > find(String keyword) {
+        return super.find(keyword);
+    }
+
+    @Override
+    public synchronized List < Task > dueBetween(LocalDate from, LocalDate to) {
+        return super.dueBetween(from, to);
+    }
+
+    @Override
+    public synchronized List < Task > eventsBetween(LocalDateTime from, LocalDateTime to) {
+        return super.eventsBetween(from, to);
+    }
+
+    @Override
+    public synchronized List < Task > conflicts(Event event) {
+        return super.conflicts(event);
+    }
+
+    @Override
+    public synchronized BitSet doneTasks() {
+        return super.doneTasks();
+    }
+
+    @Override
+    public Task get(int index) {
+        Snapshot s = pinned.get();
+        if (s != null) return s.getTasks().get(index);
+        synchronized (this) {
+            return super.get(index);
+        }
+    }
+
+    @Override
+    public int size() {
+        Snapshot s = pinned.get();
+        if (s != null) return s.size();
+        synchronized (this) {
+            return super.size();
+        }
+    }
+
+    // Whole-list reads come from the snapshot without locking
+
+    /**
+     * Return the tasks as of the most recent write.
+     *
+     * @return an unmodifiable list; its tasks may since have been marked or unmarked
+     */
+    @Override
+    public List < Task > getTasks() {
+        return snapshot().getTasks();
+    }
+
+    @Override
+    public String listTasks() {
+        return snapshot().listTasks();
+    }
+
+    @Override
+    public String listPage(int page, int pageSize) {
+        return snapshot().listPage(page, pageSize);
+    }
+
+    @Override
+    public int pageCount(int pageSize) {
+        return snapshot().pageCount(pageSize);
+    }
+
+    @Override
+    public Stream < String > rows() {
+        return snapshot().rows();
+    }
+
+    /**
+     * The tasks of a ConcurrentTaskList and their renderings at one point in time.
+     * Use one snapshot for every read that must agree, e.g. counting pages and then showing one.
+     */
+    static class Snapshot {
+        private final List < Task > tasks;
+        private final List < String > rendered;
+        private final int modCount;
+        private String listing;
+
+        private Snapshot(List < Task > live, int modCount) {
+            List < String > strings = new ArrayList < > (live.size());
+            for (Task t: live) {
+                strings.add(t.toString());
+            }
+            this.tasks = Collections.unmodifiableList(new ArrayList < > (live));
+            this.rendered = Collections.unmodifiableList(strings);
+            this.modCount = modCount;
+        }
+
+        /**
+         * Report the modification count of the list when this snapshot was taken.
+         *
+         * @return the modification count
+         */
+        public int getModCount() {
+            return modCount;
+        }
+
+        public int size() {
+            return tasks.size();
+        }
+
+        public List < Task > getTasks() {
+            return tasks;
+        }
+
+        /**
+         * Produce the listing as it was when this snapshot was taken, built once per snapshot.
+         *
+         * @return formatted string of numbered tasks or empty‑list message
+         */
+        public synchronized String listTasks() {
+            if (listing == null) {
+                listing = TaskList.listing(rendered);
+            }
+            return listing;
+        }
+
+        public String listPage(int page, int pageSize) {
+            return TaskList.listPage(rendered, page, pageSize);
+        }
+
+        public int pageCount(int pageSize) {
+            return TaskList.pageCount(rendered.size(), pageSize);
+        }
+
+        public Stream < String > rows() {
+            return TaskList.rows(rendered);
+        }
+    }
+}
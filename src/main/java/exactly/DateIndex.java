@@ -0,0 +1,62 @@
+package exactly;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Deadlines ordered by due date.
+ *
+ * Each epoch day maps to the deadlines due that day, keyed by the same sequence
+ * numbers as {@link KeywordIndex}, so a day's entries stay in list order and can be
+ * dropped in constant time. A date-range query walks only the days in the range,
+ * costing O(log n + k) for k matches instead of a scan of the whole list.
+ */
+class DateIndex {
+    private final TreeMap < Long, Map < Integer, Task > > days = new TreeMap < > ();
+
+    /**
+     * Index a deadline under its due date.
+     *
+     * @param seq  the sequence number of the task's entry
+     * @param task the deadline to index
+     */
+    public void add(int seq, Deadline task) {
+        days.computeIfAbsent(task.by.toEpochDay(), d -> new LinkedHashMap < > ()).put(seq, task);
+    }
+
+    /**
+     * Drop the entry of a deadline.
+     *
+     * @param seq  the sequence number given to {@link #add(int, Deadline)}
+     * @param task the deadline that was indexed
+     */
+    public void remove(int seq, Deadline task) {
+        long day = task.by.toEpochDay();
+        Map < Integer, Task > entries = days.get(day);
+        if (entries == null) return;
+        entries.remove(seq);
+        if (entries.isEmpty()) days.remove(day);
+    }
+
+    /**
+     * Find the deadlines due within an inclusive range of days, ordered by due date
+     * and then by position in the list.
+     *
+     * @param fromDay first epoch day of the range
+     * @param toDay   last epoch day of the range
+     * @return the matching deadlines
+     */
+    public List < Task > between(long fromDay, long toDay) {
+        List < Task > matches = new ArrayList < > ();
+        if (fromDay > toDay) return matches;
+        NavigableMap < Long, Map < Integer, Task > > range = days.subMap(fromDay, true, toDay, true);
+        for (Map < Integer, Task > entries: range.values()) {
+            matches.addAll(entries.values());
+        }
+        return matches;
+    }
+}
@@ -1,55 +1,70 @@
 package exactly;
 
-import java.io.IOException;
-import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
-import javafx.geometry.Pos;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.scene.Node;
-import java.util.Collections;
 
 /**
- * Controller for each chat bubble: text + avatar.
+ * Chat bubble: text + avatar.
+ *
+ * Built in code rather than from FXML so that creating a bubble is cheap, and
+ * reusable through {@link #show(String, Image, boolean)} so list cells can recycle it.
  */
 public class DialogBox extends HBox {
-    @FXML private Label dialog;
-    @FXML private ImageView displayPicture;
+    private final Label dialog = new Label();
+    private final ImageView displayPicture = new ImageView();
 
-    private DialogBox(String text, Image img) {
-        try {
-            FXMLLoader loader = new FXMLLoader(getClass()
-                    .getResource("/view/DialogBox.fxml"));
-            loader.setController(this);
-            loader.setRoot(this);
-            loader.load();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    DialogBox() {
+        setSpacing(10);
+        setPadding(new Insets(10));
+        dialog.setWrapText(true);
+        displayPicture.setFitWidth(50);
+        displayPicture.setFitHeight(50);
+        setAlignment(Pos.TOP_RIGHT);
+        getChildren().addAll(dialog, displayPicture);
+    }
+
+    /**
+     * Show a message in this box, replacing whatever it showed before.
+     *
+     * @param text   the message text
+     * @param img    the avatar to show next to it
+     * @param isUser true for a right-aligned user bubble, false for a left-aligned bot bubble
+     */
+    void show(String text, Image img, boolean isUser) {
         dialog.setText(text);
         displayPicture.setImage(img);
+        if (isUser) {
+            getChildren().setAll(dialog, displayPicture);
+            setAlignment(Pos.TOP_RIGHT);
+        } else {
+            getChildren().setAll(displayPicture, dialog);
+            setAlignment(Pos.TOP_LEFT);
+        }
     }
 
-    /** Flip the box so avatar appears on left. */
-    private void flip() {
-        ObservableList<Node> tmp = FXCollections
-                .observableArrayList(this.getChildren());
-        Collections.reverse(tmp);
-        getChildren().setAll(tmp);
-        setAlignment(Pos.TOP_LEFT);
+    /**
+     * Keep the text narrow enough to wrap inside a container of the given width.
+     *
+     * @param width the width of the enclosing container
+     */
+    void limitTextWidth(ReadOnlyDoubleProperty width) {
+        dialog.maxWidthProperty().bind(width.subtract(100));
     }
 
     public static DialogBox getUserDialog(String text, Image img) {
-        return new DialogBox(text, img);
+        DialogBox db = new DialogBox();
+        db.show(text, img, true);
+        return db;
     }
 
     public static DialogBox getBotDialog(String text, Image img) {
-        DialogBox db = new DialogBox(text, img);
-        db.flip();
+        DialogBox db = new DialogBox();
+        db.show(text, img, false);
         return db;
     }
 }
@@ -0,0 +1,104 @@
+package exactly;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Interval index over timed events, for "what is on" and overlap queries.
+ *
+ * Events lasting at most {@link #SHORT_MINUTES} sit in a TreeMap keyed by start
+ * minute. Such an event can only overlap a range if it starts less than that long
+ * before the range, so a query walks just the starts within
+ * [from - SHORT_MINUTES, to). Longer events are rare and are kept in a separate map
+ * that every query checks in full. Entries are keyed by the sequence numbers shared
+ * with {@link KeywordIndex}, so they can be dropped in constant time and results
+ * come out ordered by start, then by position in the list.
+ */
+class EventIndex {
+    /** Longest event, in minutes, stored in the start-ordered map. */
+    static final long SHORT_MINUTES = 24 * 60;
+
+    private final TreeMap < Long, Map < Integer, Event > > byStart = new TreeMap < > ();
+    private final Map < Integer, Event > longEvents = new LinkedHashMap < > ();
+
+    /**
+     * Index a timed event.
+     *
+     * @param seq   the sequence number of the task's entry
+     * @param event the event to index; must be timed
+     */
+    public void add(int seq, Event event) {
+        assert event.isTimed(): "Only timed events can be indexed";
+        if (isLong(event)) {
+            longEvents.put(seq, event);
+        } else {
+            byStart.computeIfAbsent(minute(event.start), m -> new LinkedHashMap < > ()).put(seq, event);
+        }
+    }
+
+    /**
+     * Drop the entry of an event.
+     *
+     * @param seq   the sequence number given to {@link #add(int, Event)}
+     * @param event the event that was indexed
+     */
+    public void remove(int seq, Event event) {
+        if (isLong(event)) {
+            longEvents.remove(seq);
+            return;
+        }
+        long start = minute(event.start);
+        Map < Integer, Event > entries = byStart.get(start);
+        if (entries == null) return;
+        entries.remove(seq);
+        if (entries.isEmpty()) byStart.remove(start);
+    }
+
+    /**
+     * Find the events that overlap the half-open range [from, to), ordered by start.
+     *
+     * @param from start of the range
+     * @param to   end of the range
+     * @return the overlapping events
+     */
+    public List < Task > overlapping(LocalDateTime from, LocalDateTime to) {
+        long fromMinute = minute(from);
+        long toMinute = minute(to);
+        List < Map.Entry < Integer, Event > > matches = new ArrayList < > ();
+        if (fromMinute < toMinute) {
+            for (Map < Integer, Event > entries: byStart.subMap(fromMinute - SHORT_MINUTES, true, toMinute, false).values()) {
+                for (Map.Entry < Integer, Event > entry: entries.entrySet()) {
+                    if (minute(entry.getValue().end) > fromMinute) matches.add(entry);
+                }
+            }
+            if (!longEvents.isEmpty()) {
+                for (Map.Entry < Integer, Event > entry: longEvents.entrySet()) {
+                    Event e = entry.getValue();
+                    if (minute(e.start) < toMinute && minute(e.end) > fromMinute) matches.add(entry);
+                }
+                // Sequence numbers follow list order, so ties on start keep list order
+                matches.sort(Comparator.comparing((Map.Entry < Integer, Event > entry) -> entry.getValue().start)
+                        .thenComparing(Map.Entry::getKey));
+            }
+        }
+        List < Task > events = new ArrayList < > (matches.size());
+        for (Map.Entry < Integer, Event > entry: matches) {
+            events.add(entry.getValue());
+        }
+        return events;
+    }
+
+    private static boolean isLong(Event event) {
+        return minute(event.end) - minute(event.start) > SHORT_MINUTES;
+    }
+
+    private static long minute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+}
@@ -0,0 +1,124 @@
+package exactly;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Turns the free-text start and end of an event into date-times where possible.
+ *
+ * Understood dates are "yyyy-MM-dd" and "d/M/yyyy", optionally followed by a time in
+ * "HH:mm", "HHmm", "2pm" or "2:30pm" form. An end given as a time only falls on the
+ * start's date, or the day after if it would otherwise end before it starts. An end
+ * given as a date only runs to the end of that day. Anything else, such as "Mon 2pm",
+ * yields null: the event keeps its text but is left out of date queries, since a
+ * relative day would mean something different on every load.
+ */
+final class EventTimeParser {
+    private EventTimeParser() {
+    }
+
+    /**
+     * Parse the start of an event.
+     *
+     * @param text the "/from" text
+     * @return the start, or null if the text has no absolute date
+     */
+    static LocalDateTime parseStart(String text) {
+        int space = text.indexOf(' ');
+        LocalDate date = parseDate(space < 0 ? text : text.substring(0, space));
+        if (date == null) return null;
+        if (space < 0) return date.atStartOfDay();
+        LocalTime time = parseTime(text.substring(space + 1).trim());
+        return time == null ? null : date.atTime(time);
+    }
+
+    /**
+     * Parse the end of an event.
+     *
+     * @param text  the "/to" text
+     * @param start the parsed start of the same event
+     * @return the end, or null if the text cannot be read or ends before the start
+     */
+    static LocalDateTime parseEnd(String text, LocalDateTime start) {
+        int space = text.indexOf(' ');
+        LocalDate date = parseDate(space < 0 ? text : text.substring(0, space));
+        LocalDateTime end;
+        if (date == null) {
+            LocalTime time = parseTime(text.trim());
+            if (time == null) return null;
+            end = start.toLocalDate().atTime(time);
+            // "10pm" to "2am" runs past midnight
+            if (end.isBefore(start)) end = end.plusDays(1);
+        } else if (space < 0) {
+            end = date.plusDays(1).atStartOfDay();
+        } else {
+            LocalTime time = parseTime(text.substring(space + 1).trim());
+            if (time == null) return null;
+            end = date.atTime(time);
+        }
+        return end.isBefore(start) ? null : end;
+    }
+
+    private static LocalDate parseDate(String text) {
+        try {
+            if (text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+                int year = digits(text, 0, 4);
+                int month = digits(text, 5, 7);
+                int day = digits(text, 8, 10);
+                return year < 0 || month < 0 || day < 0 ? null : LocalDate.of(year, month, day);
+            }
+            int first = text.indexOf('/');
+            int second = text.indexOf('/', first + 1);
+            if (first < 0 || second < 0 || text.length() - second != 5) return null;
+            int day = digits(text, 0, first);
+            int month = digits(text, first + 1, second);
+            int year = digits(text, second + 1, text.length());
+            return year < 0 || month < 0 || day < 0 ? null : LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static LocalTime parseTime(String text) {
+        try {
+            int length = text.length();
+            if (length > 2 && (text.endsWith("am") || text.endsWith("pm")
+                    || text.endsWith("AM") || text.endsWith("PM"))) {
+                boolean isPm = Character.toLowerCase(text.charAt(length - 2)) == 'p';
+                String clock = text.substring(0, length - 2).trim();
+                int colon = clock.indexOf(':');
+                int hour = digits(clock, 0, colon < 0 ? clock.length() : colon);
+                int minute = colon < 0 ? 0 : digits(clock, colon + 1, clock.length());
+                if (hour < 1 || hour > 12 || minute < 0) return null;
+                return LocalTime.of(hour % 12 + (isPm ? 12 : 0), minute);
+            }
+            if (length == 5 && text.charAt(2) == ':') {
+                int hour = digits(text, 0, 2);
+                int minute = digits(text, 3, 5);
+                return hour < 0 || minute < 0 ? null : LocalTime.of(hour, minute);
+            }
+            if (length == 4) {
+                int hour = digits(text, 0, 2);
+                int minute = digits(text, 2, 4);
+                return hour < 0 || minute < 0 ? null : LocalTime.of(hour, minute);
+            }
+            return null;
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /** Return the number written in text[from, to), or -1 if it is empty or not all digits. */
+    private static int digits(String text, int from, int to) {
+        if (from >= to || to - from > 4) return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -2,13 +2,51 @@ package exactly;
 
 import java.util.Scanner;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * Represents a task with a description and a status.
@@ -16,6 +54,8 @@ import java.util.Objects;
 class Task {
     protected String description;
     protected boolean isDone;
+    // Cached toString(); cleared whenever the done state changes
+    private String rendered;
 
     /**
      * Constructs a Task with the specified description.
@@ -32,11 +72,13 @@ class Task {
     /** Marks the task as done. */
     public void markAsDone() {
         isDone = true;
+        rendered = null;
     }
 
     /** Marks the task as not done. */
     public void unmark() {
         isDone = false;
+        rendered = null;
     }
 
     /**
@@ -48,12 +90,26 @@ class Task {
         return isDone ? "X" : " ";
     }
     /**
-     * Return a string representation of the Task.
+     * Return a string representation of the Task, rendered once and reused until the task changes.
      *
-     * @return formatted string "[<status>] <description>"
+     * @return the string built by {@link #render()}
      */
     @Override
     public String toString() {
+        String r = rendered;
+        if (r == null) {
+            r = render();
+            rendered = r;
+        }
+        return r;
+    }
+
+    /**
+     * Build the string representation of the Task.
+     *
+     * @return formatted string "[<status>] <description>"
+     */
+    protected String render() {
         return "[" + getStatusIcon() + "] " + description;
     }
     /**
@@ -110,13 +166,13 @@ class Todo extends Task {
         super(description);
     }
     /**
-     * Return a string representation of the Todo task.
+     * Build the string representation of the Todo task.
      *
      * @return formatted string "[T][<status>] <description>"
      */
     @Override
-    public String toString() {
-        return "[T]" + super.toString();
+    protected String render() {
+        return "[T]" + super.render();
     }
 }
 
@@ -124,6 +180,7 @@ class Todo extends Task {
  * Represents a Deadline task with a due date.
  */
 class Deadline extends Task {
+    private static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("MMM dd yyyy");
     protected LocalDate by;
 
     /**
@@ -139,14 +196,25 @@ class Deadline extends Task {
     }
 
     /**
-     * Return a string representation of the Deadline task.
+     * Constructs a Deadline with an already parsed due date.
+     *
+     * @param description the deadline description.
+     * @param by          the due date.
+     */
+    public Deadline(String description, LocalDate by) {
+        super(description);
+        assert by != null: "Deadline date must not be null";
+        this.by = by;
+    }
+
+    /**
+     * Build the string representation of the Deadline task.
      *
      * @return formatted string "[D][<status>] <description> (by: MMM dd yyyy)"
      */
     @Override
-    public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd yyyy");
-        return "[D]" + super.toString() + " (by: " + by.format(formatter) + ")";
+    protected String render() {
+        return "[D]" + super.render() + " (by: " + by.format(DISPLAY_FORMAT) + ")";
     }
 }
 
@@ -156,6 +224,9 @@ class Deadline extends Task {
 class Event extends Task {
     protected String from;
     protected String to;
+    // Parsed from/to, or null when the text has no absolute date (see EventTimeParser)
+    protected LocalDateTime start;
+    protected LocalDateTime end;
 
     /**
      * Constructs an Event with the specified description, start, and end times.
@@ -170,15 +241,47 @@ class Event extends Task {
         assert to != null && !to.isEmpty(): "Event end time must not be null or empty";
         this.from = from;
         this.to = to;
+        this.start = EventTimeParser.parseStart(from);
+        this.end = start == null ? null : EventTimeParser.parseEnd(to, start);
+        if (end == null) start = null;
+    }
+
+    /**
+     * Constructs an Event whose times were parsed before, e.g. when loading a saved file.
+     *
+     * @param description the event description.
+     * @param from        the start time as entered.
+     * @param to          the end time as entered.
+     * @param start       the parsed start, or null if it could not be parsed.
+     * @param end         the parsed end; null exactly when start is null.
+     */
+    public Event(String description, String from, String to, LocalDateTime start, LocalDateTime end) {
+        super(description);
+        assert from != null && !from.isEmpty(): "Event start time must not be null or empty";
+        assert to != null && !to.isEmpty(): "Event end time must not be null or empty";
+        assert (start == null) == (end == null): "Event start and end must both be known or both unknown";
+        this.from = from;
+        this.to = to;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Report whether this event has real start and end times and can take part in date queries.
+     *
+     * @return true if both times were parsed
+     */
+    public boolean isTimed() {
+        return start != null;
     }
     /**
-     * Return a string representation of the Event task.
+     * Build the string representation of the Event task.
      *
      * @return formatted string "[E][<status>] <description> (from: <from> to: <to>)"
      */
     @Override
-    public String toString() {
-        return "[E]" + super.toString() + " (from: " + from + " to: " + to + ")";
+    protected String render() {
+        return "[E]" + super.render() + " (from: " + from + " to: " + to + ")";
     }
 }
 
@@ -186,7 +289,23 @@ class Event extends Task {
  * Manages a list of tasks.
  */
 class TaskList {
+    static final String EMPTY_MESSAGE =
+            " Wow, your task list is empty! Let's get started and add some awesome tasks!\n";
+    static final String LIST_HEADER = " Here are the tasks in your list:\n";
+
     private final List < Task > tasks;
+    // Occurrence count per distinct task, so duplicate checks need not scan the list
+    private final Map < Task, Integer > index = new HashMap < > ();
+    // Index entry (sequence number) of each task, kept in step with tasks
+    private final List < Integer > seqs = new ArrayList < > ();
+    private final KeywordIndex keywords = new KeywordIndex();
+    private final DateIndex dueDates = new DateIndex();
+    private final EventIndex events = new EventIndex();
+    // Bumped on every change to the list or a task's done state
+    private int modCount;
+    // Output of listTasks() and the modCount it was built at
+    private String listing;
+    private int listingModCount = -1;
 
     /** Constructs an empty TaskList. */
     public TaskList() {
@@ -196,6 +315,9 @@ class TaskList {
     public TaskList(List < Task > tasks) {
         assert tasks != null: "Initial task list must not be null";
         this.tasks = tasks;
+        for (Task t: tasks) {
+            indexAdd(t);
+        }
     }
 
     /**
@@ -206,6 +328,8 @@ class TaskList {
     public void add(Task task) {
         assert task != null: "Task to add must not be null";
         tasks.add(task);
+        indexAdd(task);
+        modCount++;
     }
 
     /**
@@ -218,6 +342,8 @@ class TaskList {
         for (Task t: tasksToAdd) {
             assert t != null: "Individual task must not be null";
             tasks.add(t);
+            indexAdd(t);
+            modCount++;
         }
     }
     /**
@@ -227,7 +353,210 @@ class TaskList {
      * @return the Task that was removed
      */
     public Task remove(int index) {
-        return tasks.remove(index);
+        Task removed = tasks.remove(index);
+        indexRemove(index, removed);
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Mark the task at the given index as done.
+     *
+     * @param index zero-based position of the task
+     * @return true if the task was not already done
+     */
+    public boolean markAsDone(int index) {
+        Task task = tasks.get(index);
+        if (task.isDone) return false;
+        task.markAsDone();
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Mark the task at the given index as not done.
+     *
+     * @param index zero-based position of the task
+     * @return true if the task was done before
+     */
+    public boolean unmark(int index) {
+        Task task = tasks.get(index);
+        if (!task.isDone) return false;
+        task.unmark();
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Set the done state of every selected task in one pass.
+     *
+     * @param selected zero-based positions of the tasks to change
+     * @param isDone   the new done state
+     * @return the number of tasks whose state changed
+     */
+    public int markAll(BitSet selected, boolean isDone) {
+        assert selected.length() <= tasks.size(): "Selection is past the end of the list";
+        int changed = 0;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            Task task = tasks.get(i);
+            if (task.isDone != isDone) {
+                if (isDone) task.markAsDone(); else task.unmark();
+                changed++;
+            }
+        }
+        if (changed > 0) modCount++;
+        return changed;
+    }
+
+    /**
+     * Remove every selected task, shifting the survivors down in a single pass
+     * instead of once per removed task.
+     *
+     * @param selected zero-based positions of the tasks to remove
+     * @return the removed tasks, in list order
+     */
+    public List < Task > removeAll(BitSet selected) {
+        assert selected.length() <= tasks.size(): "Selection is past the end of the list";
+        List < Task > removed = new ArrayList < > (selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            Task task = tasks.get(i);
+            removed.add(task);
+            unindex(task, seqs.get(i));
+        }
+        if (!removed.isEmpty()) {
+            compact(tasks, selected);
+            compact(seqs, selected);
+            modCount++;
+        }
+        return removed;
+    }
+
+    /**
+     * Remove the elements at the selected positions in one pass, keeping the order of the rest.
+     *
+     * @param list     the list to compact in place
+     * @param selected zero-based positions to remove
+     */
+    static < T > void compact(List < T > list, BitSet selected) {
+        int first = selected.nextSetBit(0);
+        if (first < 0) return;
+        int kept = first;
+        for (int i = first; i < list.size(); i++) {
+            if (!selected.get(i)) {
+                list.set(kept++, list.get(i));
+            }
+        }
+        list.subList(kept, list.size()).clear();
+    }
+
+    /**
+     * Select the tasks that are currently done.
+     *
+     * @return zero-based positions of the done tasks
+     */
+    public BitSet doneTasks() {
+        BitSet done = new BitSet(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tasks.get(i).isDone) done.set(i);
+        }
+        return done;
+    }
+
+    /**
+     * Report how many modifications this list has seen, so callers can tell whether
+     * anything changed between two points in time.
+     *
+     * @return the modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Check whether an equal task is already in this list, in constant time.
+     *
+     * @param task the task to look for
+     * @return true if some task in the list equals the given one
+     */
+    public boolean contains(Task task) {
+        return index.containsKey(task);
+    }
+
+    /**
+     * Find all tasks whose description contains the keyword, in list order.
+     *
+     * @param keyword the substring to search for
+     * @return the matching tasks
+     */
+    public List < Task > find(String keyword) {
+        if (keyword.length() >= KeywordIndex.GRAM) {
+            return keywords.find(keyword);
+        }
+        // Too short to index; such keywords tend to match a large share of the list anyway
+        return tasks.stream()
+                .filter(t -> t.description.contains(keyword))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Find the deadlines due within an inclusive range of dates, ordered by due date
+     * and then by position in the list.
+     *
+     * @param from first due date to include
+     * @param to   last due date to include
+     * @return the matching deadlines
+     */
+    public List < Task > dueBetween(LocalDate from, LocalDate to) {
+        return dueDates.between(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * Find the timed events that overlap the half-open range [from, to), ordered by start.
+     *
+     * @param from start of the range
+     * @param to   end of the range
+     * @return the overlapping events
+     */
+    public List < Task > eventsBetween(LocalDateTime from, LocalDateTime to) {
+        return events.overlapping(from, to);
+    }
+
+    /**
+     * Find the other events in this list whose times overlap the given event.
+     *
+     * @param event the event to check
+     * @return the clashing events, ordered by start; empty if the event has no parsed times
+     */
+    public List < Task > conflicts(Event event) {
+        if (!event.isTimed()) return new ArrayList < > ();
+        List < Task > overlapping = events.overlapping(event.start, event.end);
+        overlapping.removeIf(t -> t == event);
+        return overlapping;
+    }
+
+    private void indexAdd(Task task) {
+        index.merge(task, 1, Integer::sum);
+        int seq = keywords.add(task);
+        seqs.add(seq);
+        if (task instanceof Deadline) {
+            dueDates.add(seq, (Deadline) task);
+        } else if (task instanceof Event && ((Event) task).isTimed()) {
+            events.add(seq, (Event) task);
+        }
+    }
+
+    private void indexRemove(int position, Task task) {
+        unindex(task, seqs.remove(position));
+    }
+
+    private void unindex(Task task, int seq) {
+        index.computeIfPresent(task, (t, count) -> count == 1 ? null : count - 1);
+        keywords.remove(seq);
+        if (task instanceof Deadline) {
+            dueDates.remove(seq, (Deadline) task);
+        } else if (task instanceof Event && ((Event) task).isTimed()) {
+            events.remove(seq, (Event) task);
+        }
     }
     /**
      * Retrieve the task at the given zero‑based index.
@@ -249,119 +578,756 @@ class TaskList {
 
     /**
      * Expose the live list of tasks.
+     * Callers must not add or remove through it, or the duplicate index goes stale.
      *
-     * @return a modifiable List of all Task objects
+     * @return the backing List of all Task objects
      */
     public List < Task > getTasks() {
         return tasks;
     }
 
+    /**
+     * Run a compound change, e.g. checking a task number, marking that task and journaling
+     * the mark, so that no other writer or reader runs between its steps.
+     *
+     * @param change the change; it may call any method of this list
+     * @return the change's result
+     */
+    public synchronized < T > T write(Supplier < T > change) {
+        return change.get();
+    }
+
+    /**
+     * Run a query whose reads must agree with each other, e.g. counting pages and then
+     * showing one. A plain TaskList takes the same lock as {@link #write(Supplier)}.
+     *
+     * @param query the query; it must not change the list
+     * @return the query's result
+     */
+    public synchronized < T > T read(Supplier < T > query) {
+        return query.get();
+    }
+
+    /**
+     * Return the tasks for a caller inside {@link #write(Supplier)}, which may use them
+     * until the change ends.
+     *
+     * @return the current tasks, without any copy a consistent view would need
+     */
+    List < Task > writerView() {
+        return getTasks();
+    }
+
     /**
      * Produce a user‑friendly listing of all tasks.
+     * The result is reused until the list or a task's done state changes.
      *
      * @return formatted string of numbered tasks or empty‑list message
      */
     public String listTasks() {
-        StringBuilder sb = new StringBuilder();
-        if (tasks.isEmpty()) {
-            sb.append(" Wow, your task list is empty! Let's get started and add some awesome tasks!\n");
+        if (listing != null && listingModCount == modCount) {
+            return listing;
+        }
+        // Rows reuse each task's cached rendering, so only changed tasks are formatted again
+        listing = listing(tasks);
+        listingModCount = modCount;
+        return listing;
+    }
+
+    /**
+     * Format a full listing of the given rows.
+     *
+     * @param rows tasks, or their renderings, in list order
+     * @return formatted string of numbered rows or empty‑list message
+     */
+    static String listing(List < ? > rows) {
+        StringBuilder sb = new StringBuilder(64 + rows.size() * 48);
+        if (rows.isEmpty()) {
+            sb.append(EMPTY_MESSAGE);
         } else {
-            sb.append(" Here are the tasks in your list:\n");
-            for (int i = 0; i < tasks.size(); i++) {
-                sb.append(" ").append(i + 1).append(". ").append(tasks.get(i)).append("\n");
-            }
+            sb.append(LIST_HEADER);
+            appendRows(sb, rows, 0, rows.size());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Produce one page of the listing, numbered by position in the whole list.
+     *
+     * @param page     one-based page number; must not be past the last page
+     * @param pageSize number of tasks per page
+     * @return formatted string of the numbered tasks on that page, or the empty-list message
+     */
+    public String listPage(int page, int pageSize) {
+        return listPage(tasks, page, pageSize);
+    }
+
+    /**
+     * Format one page of a listing of the given rows.
+     *
+     * @param rows     tasks, or their renderings, in list order
+     * @param page     one-based page number; must not be past the last page
+     * @param pageSize number of rows per page
+     * @return formatted string of the numbered rows on that page, or the empty-list message
+     */
+    static String listPage(List < ? > rows, int page, int pageSize) {
+        assert page >= 1 && pageSize >= 1: "Page and page size must be positive";
+        if (rows.isEmpty()) {
+            return EMPTY_MESSAGE;
         }
+        int from = (page - 1) * pageSize;
+        assert from < rows.size(): "Page is past the end of the list";
+        int to = Math.min(from + pageSize, rows.size());
+        StringBuilder sb = new StringBuilder(64 + (to - from) * 48);
+        sb.append(" Here are tasks ").append(from + 1).append("-").append(to)
+                .append(" of ").append(rows.size()).append(" in your list:\n");
+        appendRows(sb, rows, from, to);
         return sb.toString();
     }
+
+    /**
+     * Count the pages needed to show the whole list.
+     *
+     * @param pageSize number of tasks per page
+     * @return the number of pages, at least 1
+     */
+    public int pageCount(int pageSize) {
+        return pageCount(tasks.size(), pageSize);
+    }
+
+    static int pageCount(int size, int pageSize) {
+        return Math.max(1, (size + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Stream the numbered rows of the listing, rendering each one only as it is consumed.
+     *
+     * @return rows such as " 1. [T][ ] read book", without trailing newlines
+     */
+    public Stream < String > rows() {
+        return rows(tasks);
+    }
+
+    static Stream < String > rows(List < ? > rows) {
+        return IntStream.range(0, rows.size()).mapToObj(i -> " " + (i + 1) + ". " + rows.get(i));
+    }
+
+    private static void appendRows(StringBuilder sb, List < ? > rows, int from, int to) {
+        for (int i = from; i < to; i++) {
+            sb.append(" ").append(i + 1).append(". ").append(rows.get(i)).append("\n");
+        }
+    }
 }
 
 /**
  * Handles loading and saving tasks from/to a file.
  */
 class Storage {
+    /** Number of journal records after which the log is folded into a new snapshot. */
+    static final int COMPACT_THRESHOLD = 1000;
+
+    /** On-disk encodings of the snapshot file. */
+    enum Format {
+        /** Human-readable "T | 0 | desc" lines. */
+        TEXT,
+        /** Compact length-prefixed records, see {@link BinaryTaskCodec}. */
+        BINARY,
+        /** Memory-mapped records updated in place, see {@link SlotFile}. */
+        SLOTS
+    }
+
+    /** System property that picks the format of the data file: text, binary or slots. */
+    static final String FORMAT_PROPERTY = "exactly.format";
+
     private final String filePath;
+    private final Format format;
+    private final TaskJournal journal;
+    private final BackgroundSaver saver = new BackgroundSaver(this::writeSnapshot);
+    private final Metrics metrics;
+    // Opened by load() when the format is SLOTS; every logged change is applied to it in place
+    private SlotFile slots;
+    // Written by the saver thread, read when the journal starts a new log
+    private volatile long snapshotChecksum;
+    // Set when the data file could not be read nor set aside, so nothing is written over it
+    private volatile boolean isUnreadable;
 
     /**
      * Create a Storage handler for the given file path.
      *
-     * @param filePath path to the data file where tasks are persisted
+     * @param filePath path to the data file where tasks are persisted
+     */
+    public Storage(String filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * Create a Storage handler, optionally journaling mutations to an append-only log.
+     *
+     * @param filePath    path to the data file where tasks are persisted
+     * @param isJournaled whether mutations are appended to "filePath.log" instead of rewriting the file
+     */
+    public Storage(String filePath, boolean isJournaled) {
+        this(filePath, Format.TEXT, isJournaled);
+    }
+
+    /**
+     * Create a Storage handler that writes its snapshot in the given format.
+     *
+     * @param filePath    path to the data file where tasks are persisted
+     * @param format      encoding of the data file
+     * @param isJournaled whether mutations are appended to "filePath.log" instead of rewriting the file
+     */
+    public Storage(String filePath, Format format, boolean isJournaled) {
+        this(filePath, format, isJournaled, Metrics.DISABLED);
+    }
+
+    /**
+     * Create a Storage handler that times its loads, saves and journal appends.
+     *
+     * @param filePath    path to the data file where tasks are persisted
+     * @param format      encoding of the data file
+     * @param isJournaled whether mutations are appended to "filePath.log" instead of rewriting the file;
+     *                    ignored for {@link Format#SLOTS}, which updates the data file in place
+     * @param metrics     where to record timings and sizes
+     */
+    public Storage(String filePath, Format format, boolean isJournaled, Metrics metrics) {
+        assert filePath != null && !filePath.isEmpty(): "File path must not be null or empty";
+        assert format != null: "Format must not be null";
+        assert metrics != null: "Metrics must not be null";
+        this.filePath = filePath;
+        this.format = format;
+        this.journal = isJournaled && format != Format.SLOTS ? new TaskJournal(filePath + ".log") : null;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Rewrite a data file in another format, e.g. to migrate between text and binary.
+     *
+     * @param fromPath   the existing data file
+     * @param fromFormat the encoding of the existing file
+     * @param toPath     the data file to write
+     * @param toFormat   the encoding to write
+     * @return the number of tasks converted
+     */
+    public static int convert(String fromPath, Format fromFormat, String toPath, Format toFormat) {
+        List < Task > tasks = new Storage(fromPath, fromFormat, false).load();
+        new Storage(toPath, toFormat, false).save(tasks);
+        return tasks.size();
+    }
+
+    /**
+     * Return the format named by the {@value #FORMAT_PROPERTY} system property, or text if unset.
+     *
+     * @return the format to store tasks in
+     */
+    static Format formatFromSystemProperty() {
+        String name = System.getProperty(FORMAT_PROPERTY, "text");
+        try {
+            return Format.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error reading " + FORMAT_PROPERTY + ": unknown format " + name);
+            return Format.TEXT;
+        }
+    }
+
+    /**
+     * Report whether this storage appends mutations to a journal.
+     *
+     * @return true if journaling is enabled
+     */
+    public boolean isJournaled() {
+        return journal != null;
+    }
+
+    /**
+     * Report how many records the journal holds on top of the snapshot.
+     *
+     * @return the number of records, or 0 if journaling is disabled
+     */
+    public int journalSize() {
+        return journal == null ? 0 : journal.size();
+    }
+
+    /**
+     * Load all tasks from the storage file, replaying the journal on top if enabled.
+     *
+     * @return a List of Tasks (empty if file not found or empty)
+     */
+    public List < Task > load() {
+        return load(new StringDictionary());
+    }
+
+    /**
+     * Load all tasks, sharing repeated descriptions and event times through a dictionary.
+     *
+     * @param strings the dictionary the loaded text is interned into
+     * @return a List of Tasks (empty if file not found or empty)
+     */
+    public List < Task > load(StringDictionary strings) {
+        long start = metrics.start();
+        List < Task > tasks = new ArrayList < > ();
+        List < String > damaged = List.of();
+        CRC32 crc = new CRC32();
+        File file = new File(filePath);
+        // The file may have been written in another format than the one configured
+        Format stored = null;
+        boolean isLoaded = false;
+        try {
+            stored = detectFormat(file.toPath());
+            Format reading = stored == null ? format : stored;
+            if (reading == Format.SLOTS) {
+                SlotFile opened = new SlotFile(file.toPath());
+                opened.load(tasks, strings);
+                if (format == Format.SLOTS) {
+                    slots = opened;
+                } else {
+                    opened.close();
+                }
+            } else if (file.exists() && reading == Format.BINARY) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new CheckedInputStream(new FileInputStream(file), crc)))) {
+                    BinaryTaskCodec codec = new BinaryTaskCodec(strings);
+                    codec.read(in, tasks);
+                    damaged = codec.damagedRecords();
+                    // Run any trailing bytes through the checksum too
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            } else if (file.exists()) {
+                try (Reader in = new InputStreamReader(
+                        new CheckedInputStream(new FileInputStream(file), crc), StandardCharsets.UTF_8)) {
+                    TaskFileReader reader = new TaskFileReader(strings);
+                    reader.read(in, tasks);
+                    damaged = reader.damagedRecords();
+                }
+            }
+            isLoaded = true;
+        } catch (Exception e) {
+            System.out.println("Error loading tasks: " + e.getMessage());
+            setAside(file.toPath());
+        }
+        snapshotChecksum = crc.getValue();
+        if (journal != null) {
+            journal.replay(tasks, snapshotChecksum);
+        }
+        if (!damaged.isEmpty()) {
+            recover(tasks, damaged);
+        }
+        if (isLoaded && stored != null && stored != format) {
+            convertLoaded(tasks, stored, strings);
+        }
+        metrics.recordLoad(start, file.length());
+        metrics.recordSharing(strings.size(), strings.sharedCount(), strings.sharedBytes());
+        return tasks;
+    }
+    /**
+     * Return the format a data file is stored in, judged by its magic bytes.
+     *
+     * @param path the data file
+     * @return the format found, or null if the file is missing or too short to tell
+     * @throws IOException if the file cannot be read
+     */
+    static Format detectFormat(Path path) throws IOException {
+        if (!Files.exists(path)) return null;
+        byte[] magic = new byte[4];
+        int length;
+        try (InputStream in = Files.newInputStream(path)) {
+            length = in.readNBytes(magic, 0, magic.length);
+        }
+        if (length < magic.length) return null;
+        if (Arrays.equals(magic, BinaryTaskCodec.MAGIC)) return Format.BINARY;
+        if (Arrays.equals(magic, SlotFile.MAGIC)) return Format.SLOTS;
+        return Format.TEXT;
+    }
+
+    /**
+     * Rewrite a data file that was loaded from another format in the configured one, so
+     * the next save does not replace it with a file the other format cannot read back.
+     * The journal has already been replayed, so it is folded into the new file.
+     *
+     * @param tasks   every task that was loaded
+     * @param stored  the format the file was found in
+     * @param strings the dictionary the loaded text was interned into
+     */
+    private void convertLoaded(List < Task > tasks, Format stored, StringDictionary strings) {
+        String from = stored.name().toLowerCase(Locale.ROOT);
+        String to = format.name().toLowerCase(Locale.ROOT);
+        System.out.println("Warning: " + filePath + " is stored as " + from + "; converting it to " + to + ".");
+        if (!writeSnapshot(tasks)) return;
+        if (journal != null) journal.reset();
+        if (format == Format.SLOTS) {
+            try {
+                slots = new SlotFile(Paths.get(filePath));
+                slots.load(new ArrayList < > (), strings);
+            } catch (IOException e) {
+                // Every later change rewrites the whole file instead
+                System.out.println("Error loading tasks: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Move damaged records out of the data file: append them to "filePath.quarantine",
+     * then write a clean snapshot of everything that could be read, so the next load
+     * starts from intact data and the same records are not quarantined twice.
+     * The journal has already been replayed, so it is folded into the snapshot.
+     *
+     * @param tasks   every task that was salvaged
+     * @param damaged the damaged records, as the reader reported them
+     */
+    private void recover(List < Task > tasks, List < String > damaged) {
+        Path quarantine = Paths.get(filePath + ".quarantine");
+        try (Writer out = Files.newBufferedWriter(quarantine, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write("# " + LocalDateTime.now() + ": " + damaged.size() + " damaged records from " + filePath + "\n");
+            for (String record: damaged) {
+                out.write(record);
+                out.write("\n");
+            }
+        } catch (IOException e) {
+            // Keep the damaged file as it is rather than lose the records for good
+            System.out.println("Error quarantining damaged tasks: " + e.getMessage());
+            return;
+        }
+        System.out.println("Warning: Moved " + damaged.size() + " damaged records to " + quarantine
+                + " and kept " + tasks.size() + " tasks.");
+        if (writeSnapshot(tasks) && journal != null) {
+            journal.reset();
+        }
+    }
+
+    /**
+     * Keep a data file that could not be read at all: append its bytes in hex to
+     * "filePath.quarantine", so the empty list that replaces it loses nothing. If that
+     * fails, the file is left alone and no change is saved over it.
+     *
+     * @param path the data file that failed to load
+     */
+    private void setAside(Path path) {
+        if (!Files.exists(path)) return;
+        Path quarantine = Paths.get(filePath + ".quarantine");
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            String entry = "# " + LocalDateTime.now() + ": unreadable data file " + filePath + ", "
+                    + bytes.length + " bytes\n" + BinaryTaskCodec.hex(bytes, bytes.length) + "\n";
+            Files.writeString(quarantine, entry, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (format == Format.SLOTS) {
+                Files.delete(path);
+                slots = new SlotFile(path);
+            }
+        } catch (IOException e) {
+            isUnreadable = true;
+            System.out.println("Error quarantining damaged tasks: " + e.getMessage());
+            System.out.println("Warning: Changes will not be saved, so " + filePath + " stays as it is.");
+            return;
+        }
+        System.out.println("Warning: Moved the unreadable " + filePath + " to " + quarantine
+                + " and started with an empty list.");
+    }
+
+    /**
+     * Save the given tasks to the storage file and clear the journal, waiting until it is on disk.
+     *
+     * @param tasks the list of tasks to persist
+     */
+    public void save(List < Task > tasks) {
+        saver.flush();
+        if (writeSnapshot(tasks) && journal != null) {
+            journal.reset();
+        }
+    }
+
+    /**
+     * Write a snapshot to a temporary file, force it to disk and rename it over the
+     * data file, so a crash mid-write never leaves a half-written data file behind.
+     *
+     * @param tasks the list of tasks to persist
+     * @return true if the snapshot was written
+     */
+    private boolean writeSnapshot(List < Task > tasks) {
+        if (isUnreadable) {
+            System.out.println("Error saving tasks: " + filePath + " could not be read, so it is not replaced.");
+            return false;
+        }
+        long start = metrics.start();
+        CRC32 crc = new CRC32();
+        Path target = Paths.get(filePath);
+        Path temp = Paths.get(filePath + ".tmp");
+        try {
+            File parent = target.toAbsolutePath().getParent().toFile();
+            if (!parent.exists()) parent.mkdirs();
+            if (format == Format.SLOTS) {
+                if (slots != null) {
+                    slots.rewrite(tasks);
+                } else {
+                    SlotFile.write(target, tasks);
+                }
+                metrics.recordSave(start, target.toFile().length());
+                return true;
+            }
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                OutputStream out = new CheckedOutputStream(file, crc);
+                if (format == Format.BINARY) {
+                    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+                    new BinaryTaskCodec().write(tasks, dos);
+                    dos.flush();
+                } else {
+                    Writer fw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    RecordChecksum checksum = new RecordChecksum();
+                    StringBuilder record = new StringBuilder(128);
+                    fw.write(TaskFileReader.CHECKSUM_HEADER);
+                    fw.write("\n");
+                    for (Task t: tasks) {
+                        record.setLength(0);
+                        record.append(encode(t));
+                        checksum.append(record);
+                        fw.append(record).append('\n');
+                    }
+                    fw.flush();
+                }
+                file.getChannel().force(true);
+            }
+            moveDurably(temp, target);
+        } catch (Exception e) {
+            System.out.println("Error saving tasks: " + e.getMessage());
+            // Drop the partial file, so it never blocks or gets mistaken for a later save
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteError) {
+                System.out.println("Error saving tasks: " + deleteError.getMessage());
+            }
+            return false;
+        }
+        snapshotChecksum = crc.getValue();
+        metrics.recordSave(start, target.toFile().length());
+        return true;
+    }
+
+    /**
+     * Rename a fully written file over its target, atomically where the file system allows,
+     * and force the directory entry to disk so the rename survives a crash too.
+     *
+     * @param temp   the new file, already forced to disk
+     * @param target the file to replace
+     * @throws IOException if the rename fails
+     */
+    static void moveDurably(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(target);
+    }
+
+    /**
+     * Force the directory entry of a newly created or renamed file to disk.
+     *
+     * @param file the file whose directory to force
+     */
+    static void forceDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms, e.g. Windows, cannot open a directory; renames are still atomic there
+        }
+    }
+
+    /**
+     * Bring the storage up to date after a command without blocking the caller.
+     * In plain mode a snapshot is queued for the background writer, which coalesces
+     * bursts; in journaled mode the log is compacted in the background once it has
+     * grown long enough. Slot files already hold every change, and are only compacted
+     * in the background once deleted records take up more room than live ones, or
+     * rewritten at once if a change could not be applied in place.
+     *
+     * @param tasks the current list of tasks; copied before this method returns
+     */
+    public void persist(List < Task > tasks) {
+        if (slots != null) {
+            // After a failed append the file is behind the list; rewrite it before the next command
+            if (slots.isStale()) {
+                writeSnapshot(tasks);
+            } else if (slots.needsCompaction()) {
+                slots.compactInBackground();
+            }
+        } else if (journal == null) {
+            saver.submit(new ArrayList < > (tasks), null);
+        } else if (journal.size() >= COMPACT_THRESHOLD && !journal.isSealed()) {
+            try {
+                journal.seal(snapshotChecksum);
+            } catch (Exception e) {
+                System.out.println("Error saving tasks: " + e.getMessage());
+                return;
+            }
+            saver.submit(new ArrayList < > (tasks), isSuccess -> {
+                if (isSuccess) {
+                    journal.finishSeal();
+                } else {
+                    journal.abortSeal();
+                }
+            });
+        }
+    }
+
+    /**
+     * Block until every change passed to {@link #persist(List)} so far is on disk.
+     */
+    public void flush() {
+        saver.flush();
+        if (slots != null) slots.force();
+    }
+
+    /**
+     * Flush outstanding writes and stop the background writer.
+     */
+    public void close() {
+        saver.close();
+        if (journal != null) journal.close();
+        if (slots != null) slots.close();
+    }
+
+    /**
+     * Journal the addition of a task at the end of the list.
+     *
+     * @param task the task that was added
+     */
+    public void logAdd(Task task) {
+        if (slots != null) {
+            long start = metrics.start();
+            try {
+                slots.append(task);
+            } catch (IOException e) {
+                System.out.println("Error saving tasks: " + e.getMessage());
+                return;
+            }
+            metrics.recordJournal(start);
+            return;
+        }
+        log(TaskJournal.ADD + " | " + encode(task));
+    }
+
+    /**
+     * Journal a change of the done flag of the task at the given index.
+     *
+     * @param index  zero-based position of the task
+     * @param isDone the new done state
+     */
+    public void logMark(int index, boolean isDone) {
+        if (slots != null) {
+            long start = metrics.start();
+            slots.setDone(index, isDone);
+            metrics.recordJournal(start);
+            return;
+        }
+        log((isDone ? TaskJournal.MARK : TaskJournal.UNMARK) + " | " + index);
+    }
+
+    /**
+     * Journal the removal of the task at the given index.
+     *
+     * @param index zero-based position of the removed task
+     */
+    public void logDelete(int index) {
+        if (slots != null) {
+            long start = metrics.start();
+            slots.delete(index);
+            metrics.recordJournal(start);
+            return;
+        }
+        log(TaskJournal.DELETE + " | " + index);
+    }
+
+    /**
+     * Journal a change of the done flag of several tasks as one record.
+     *
+     * @param indices zero-based positions of the tasks
+     * @param isDone  the new done state
+     */
+    public void logMarkAll(BitSet indices, boolean isDone) {
+        if (slots != null) {
+            long start = metrics.start();
+            slots.setDoneAll(indices, isDone);
+            metrics.recordJournal(start);
+            return;
+        }
+        log((isDone ? TaskJournal.BULK_MARK : TaskJournal.BULK_UNMARK) + " | " + TaskJournal.formatRanges(indices));
+    }
+
+    /**
+     * Journal the removal of several tasks as one record.
+     *
+     * @param indices zero-based positions of the removed tasks, before removal
+     */
+    public void logDeleteAll(BitSet indices) {
+        if (slots != null) {
+            long start = metrics.start();
+            slots.deleteAll(indices);
+            metrics.recordJournal(start);
+            return;
+        }
+        log(TaskJournal.BULK_DELETE + " | " + TaskJournal.formatRanges(indices));
+    }
+
+    private void log(String record) {
+        // Records on top of a file that could not be read would replay against the wrong tasks
+        if (journal == null || isUnreadable) return;
+        long start = metrics.start();
+        try {
+            journal.append(record, snapshotChecksum);
+        } catch (Exception e) {
+            System.out.println("Error saving tasks: " + e.getMessage());
+            return;
+        }
+        metrics.recordJournal(start);
+    }
+
+    /**
+     * Encode a task as one line of the data file, without the trailing newline.
+     *
+     * @param t the task to encode
+     * @return the "T | 0 | desc" style record
      */
-    public Storage(String filePath) {
-        assert filePath != null && !filePath.isEmpty(): "File path must not be null or empty";
-        this.filePath = filePath;
+    static String encode(Task t) {
+        String done = t.isDone ? "1" : "0";
+        if (t instanceof Deadline) {
+            return "D | " + done + " | " + escape(t.description) + " | " + ((Deadline) t).by;
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            return "E | " + done + " | " + escape(t.description) + " | " + escape(e.from) + " | " + escape(e.to);
+        }
+        return "T | " + done + " | " + escape(t.description);
     }
 
     /**
-     * Load all tasks from the storage file.
+     * Backslash-escape '|' and '\' so free text can never be mistaken for a delimiter.
      *
-     * @return a List of Tasks (empty if file not found or empty)
+     * @param text the text to escape
+     * @return the escaped text, or the same instance if nothing needed escaping
      */
-    public List < Task > load() {
-        List < Task > tasks = new ArrayList < > ();
-        try {
-            File file = new File(filePath);
-            if (!file.exists()) return tasks;
-            Scanner fileScanner = new Scanner(file);
-            while (fileScanner.hasNextLine()) {
-                String line = fileScanner.nextLine();
-                String[] parts = line.split(" | ");
-                try {
-                    String type = parts[0];
-                    boolean isDone = parts[1].trim().equals("1");
-                    switch (type) {
-                    case "T":
-                        Todo t = new Todo(parts[2]);
-                        if (isDone) t.markAsDone();
-                        tasks.add(t);
-                        break;
-                    case "D":
-                        Deadline d = new Deadline(parts[2], parts[3]);
-                        if (isDone) d.markAsDone();
-                        tasks.add(d);
-                        break;
-                    case "E":
-                        Event e = new Event(parts[2], parts[3], parts[4]);
-                        if (isDone) e.markAsDone();
-                        tasks.add(e);
-                        break;
-                    default:
-                        System.out.println("Warning: Unknown task type in file: " + line);
-                    }
-                } catch (Exception e) {
-                    System.out.println("Warning: Skipping invalid task entry in file: " + line);
-                }
-            }
-            fileScanner.close();
-        } catch (Exception e) {
-            System.out.println("Error loading tasks: " + e.getMessage());
+    static String escape(String text) {
+        if (text.indexOf('|') < 0 && text.indexOf('\\') < 0) {
+            return text;
         }
-        return tasks;
+        StringBuilder sb = new StringBuilder(text.length() + 4);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '|' || c == '\\') sb.append('\\');
+            sb.append(c);
+        }
+        return sb.toString();
     }
+
     /**
-     * Save the given tasks to the storage file.
+     * Decode one line of the data file into a task.
      *
-     * @param tasks the list of tasks to persist
+     * @param line the "T | 0 | desc" style record
+     * @return the decoded task
+     * @throws IllegalArgumentException if the line is not a valid record
      */
-    public void save(List < Task > tasks) {
-        try {
-            File dir = new File("data");
-            if (!dir.exists()) dir.mkdir();
-            FileWriter fw = new FileWriter(filePath);
-            for (Task t: tasks) {
-                if (t instanceof Todo) {
-                    fw.write("T | " + (t.isDone ? "1" : "0") + " | " + t.description + "\n");
-                } else if (t instanceof Deadline) {
-                    Deadline d = (Deadline) t;
-                    fw.write("D | " + (t.isDone ? "1" : "0") + " | " + t.description + " | " + d.by + "\n");
-                } else if (t instanceof Event) {
-                    Event e = (Event) t;
-                    fw.write("E | " + (t.isDone ? "1" : "0") + " | " + t.description + " | " + e.from + " | " + e.to + "\n");
-                }
-            }
-            fw.close();
-        } catch (Exception e) {
-            System.out.println("Error saving tasks: " + e.getMessage());
-        }
+    static Task decode(String line) {
+        return new TaskFileReader().parse(line);
     }
 }
 
@@ -396,6 +1362,16 @@ class Ui {
     public void showLine() {
         System.out.println("____________________________________________________________");
     }
+    /**
+     * Print lines to the console through one buffered writer, as they are produced.
+     *
+     * @param lines the lines to print, without trailing newlines
+     */
+    public void showLines(Stream < String > lines) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        lines.forEach(line -> out.append(line).append('\n'));
+        out.flush();
+    }
     /**
      * Display an error message in the console.
      *
@@ -422,15 +1398,168 @@ class Ui {
  * Parses user commands.
  */
 class Parser {
+    // values() copies the array on every call
+    private static final Command.Type[] TYPES = Command.Type.values();
+    // Slots of the fields a deadline or event is split into
+    private static final int DESCRIPTION = 0;
+    private static final int BY = 1;
+    private static final int FROM = 2;
+    private static final int TO = 3;
+
     /**
-     * Split raw user input into command and arguments.
+     * Parse raw user input into a command in one pass over the text, without regular
+     * expressions. Flags ("/by", "/from", "/to") may come in any order; a "/word" that
+     * is not a flag of the command is kept as ordinary text.
      *
      * @param input the full input string
-     * @return an array where element 0 is the command, element 1 (optional) are the args
+     * @return the parsed command; its type is UNKNOWN if the first word is not a command
      */
-    public static String[] parse(String input) {
+    public static Command parse(String input) {
         assert input != null: "Input must not be null";
-        return input.split(" ", 2);
+        int length = input.length();
+        int wordStart = skipSpaces(input, 0, length);
+        int wordEnd = wordStart;
+        while (wordEnd < length && input.charAt(wordEnd) > ' ') {
+            wordEnd++;
+        }
+        Command.Type type = typeOf(input, wordStart, wordEnd);
+        String args = slice(input, wordEnd, length);
+        if (type == Command.Type.DEADLINE || type == Command.Type.EVENT) {
+            return parseFlags(type, args);
+        }
+        return new Command(type, args, "", null, null, null, false);
+    }
+
+    private static Command.Type typeOf(String input, int from, int to) {
+        int length = to - from;
+        for (Command.Type type: TYPES) {
+            String keyword = type.keyword;
+            if (keyword != null && keyword.length() == length && input.regionMatches(from, keyword, 0, length)) {
+                return type;
+            }
+        }
+        return Command.Type.UNKNOWN;
+    }
+
+    private static Command parseFlags(Command.Type type, String args) {
+        String[] fields = new String[4];
+        boolean hasRepeatedFlag = false;
+        int field = DESCRIPTION;
+        int fieldStart = 0;
+        int length = args.length();
+        for (int i = 0; i < length; i++) {
+            if (args.charAt(i) != '/' || (i > 0 && args.charAt(i - 1) != ' ')) continue;
+            int flagEnd = i + 1;
+            while (flagEnd < length && args.charAt(flagEnd) > ' ') {
+                flagEnd++;
+            }
+            int flag = flagOf(type, args, i + 1, flagEnd);
+            if (flag < 0) continue;
+            hasRepeatedFlag |= fields[field] != null;
+            fields[field] = slice(args, fieldStart, i);
+            field = flag;
+            fieldStart = flagEnd;
+            i = flagEnd - 1;
+        }
+        hasRepeatedFlag |= fields[field] != null;
+        fields[field] = slice(args, fieldStart, length);
+        String description = fields[DESCRIPTION] == null ? "" : fields[DESCRIPTION];
+        return new Command(type, args, description, fields[BY], fields[FROM], fields[TO], hasRepeatedFlag);
+    }
+
+    /** Return which field a "/word" starts, or -1 if it is not a flag of this command. */
+    private static int flagOf(Command.Type type, String text, int from, int to) {
+        int length = to - from;
+        if (type == Command.Type.DEADLINE) {
+            return length == 2 && text.regionMatches(from, "by", 0, 2) ? BY : -1;
+        }
+        if (length == 4 && text.regionMatches(from, "from", 0, 4)) return FROM;
+        if (length == 2 && text.regionMatches(from, "to", 0, 2)) return TO;
+        return -1;
+    }
+
+    /**
+     * Split text into its whitespace-separated words.
+     *
+     * @param text the text to split
+     * @return the words, in order
+     */
+    public static List < String > words(String text) {
+        List < String > words = new ArrayList < > ();
+        int length = text.length();
+        int start = skipSpaces(text, 0, length);
+        while (start < length) {
+            int end = start;
+            while (end < length && text.charAt(end) > ' ') {
+                end++;
+            }
+            words.add(text.substring(start, end));
+            start = skipSpaces(text, end, length);
+        }
+        return words;
+    }
+
+    private static int skipSpaces(String text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /** Return text[from, to) without surrounding whitespace. */
+    private static String slice(String text, int from, int to) {
+        from = skipSpaces(text, from, to);
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return from == to ? "" : text.substring(from, to);
+    }
+
+    /**
+     * Report whether a task-number argument selects several tasks, such as "1-500",
+     * "3,7,9-20" or "done", rather than a single task number.
+     *
+     * @param spec the trimmed argument
+     * @return true if the argument should be handled as a bulk selection
+     */
+    public static boolean isSelection(String spec) {
+        return spec.equals("done") || spec.indexOf(',') >= 0 || spec.indexOf('-', 1) >= 0;
+    }
+
+    /**
+     * Parse one-based task numbers and ranges such as "1-500" or "3,7,9-20".
+     *
+     * @param spec the selection text
+     * @param size number of tasks in the list; every number must be between 1 and size
+     * @return the selected zero-based positions
+     * @throws IllegalArgumentException if the selection is malformed or out of range
+     */
+    public static BitSet parseIndices(String spec, int size) {
+        BitSet selected = new BitSet(size);
+        for (String part: spec.split(",")) {
+            String range = part.trim();
+            int dash = range.indexOf('-');
+            int from = parseTaskNumber(dash < 0 ? range : range.substring(0, dash), size);
+            int to = dash < 0 ? from : parseTaskNumber(range.substring(dash + 1), size);
+            if (from > to) {
+                throw new IllegalArgumentException("Ranges go from low to high, like " + to + "-" + from + "!");
+            }
+            selected.set(from - 1, to);
+        }
+        return selected;
+    }
+
+    private static int parseTaskNumber(String text, int size) {
+        int number;
+        try {
+            number = Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + text.trim() + "' is not a task number! Use numbers like 3, 1-5 or 3,7,9-20.");
+        }
+        if (number < 1 || number > size) {
+            throw new IllegalArgumentException("There is no task " + number + "! Your list has " + size + " tasks.");
+        }
+        return number;
     }
 }
 
@@ -440,8 +1569,24 @@ class Parser {
  * Manages the UI, command parsing, task list, and storage.
  */
 public class Exactly {
+    /** Page size used by "list <page>" when none is given. */
+    static final int DEFAULT_PAGE_SIZE = 50;
+    // Commands that only read the list, so nothing is saved after them
+    private static final EnumSet < Command.Type > QUERIES = EnumSet.of(Command.Type.LIST, Command.Type.FIND,
+            Command.Type.DUE, Command.Type.ON, Command.Type.CONFLICTS, Command.Type.STATS, Command.Type.UNKNOWN);
+
     private final Storage storage;
-    private final TaskList tasks;
+    // Completes once the data file has been read and indexed
+    private final CompletableFuture < TaskList > loading;
+    // Null until the first command has waited for loading
+    private volatile TaskList tasks;
+    private final Metrics metrics = Metrics.fromSystemProperty();
+    // Batch commands skip the journal and are covered by a snapshot at the next checkpoint;
+    // both flags are only touched inside tasks.write
+    private boolean isBatching;
+    private boolean isBatchUnsaved;
+    // Tasks per page for a bare "list"; 0 lists everything
+    private int listPageSize;
     Ui ui;
     /**
      * Initialize Exactly with the given storage file path and load existing tasks.
@@ -449,11 +1594,101 @@ public class Exactly {
      * @param filePath path to the file used for loading and saving tasks
      */
     public Exactly(String filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * Initialize Exactly, optionally journaling each mutation instead of rewriting the file.
+     *
+     * @param filePath    path to the file used for loading and saving tasks
+     * @param isJournaled whether to append mutations to a log that is periodically compacted
+     */
+    public Exactly(String filePath, boolean isJournaled) {
+        this(filePath, isJournaled, false);
+    }
+
+    /**
+     * Initialize Exactly, optionally reading the data file on a background thread.
+     *
+     * With a background load the constructor returns at once, so a front end can show
+     * itself before a large file has been read. Commands wait until the load is done
+     * and then run in the order they were given.
+     *
+     * @param filePath         path to the file used for loading and saving tasks
+     * @param isJournaled      whether to append mutations to a log that is periodically compacted
+     * @param isBackgroundLoad whether to load the tasks on a background thread
+     */
+    public Exactly(String filePath, boolean isJournaled, boolean isBackgroundLoad) {
         assert filePath != null && !filePath.isEmpty(): "File path must not be null or empty";
         ui = new Ui();
-        storage = new Storage(filePath);
-        tasks = new TaskList(storage.load());
+        storage = new Storage(filePath, Storage.formatFromSystemProperty(), isJournaled, metrics);
+        if (isBackgroundLoad) {
+            loading = CompletableFuture.supplyAsync(this::loadTasks, r -> {
+                Thread t = new Thread(r, "exactly-loader");
+                t.setDaemon(true);
+                t.start();
+            });
+        } else {
+            loading = CompletableFuture.completedFuture(loadTasks());
+            tasks = loading.join();
+        }
+        metrics.setGauges(() -> {
+            TaskList loaded = loading.getNow(null);
+            return loaded == null ? 0 : loaded.size();
+        }, storage::journalSize);
+    }
+
+    private TaskList loadTasks() {
+        // Run with -Dexactly.compactTasks=true to hold very large lists in a fraction of the memory
+        StringDictionary strings = new StringDictionary();
+        List < Task > stored = storage.load(strings);
+        // The compact list keeps the dictionary; a plain list only keeps the shared strings.
+        // The plain list serves listings from snapshots, so front ends on other threads can read without waiting
+        TaskList loaded = Boolean.getBoolean(CompactTaskList.PROPERTY)
+                ? new CompactTaskList(stored, strings)
+                : new ConcurrentTaskList(stored);
+        StartupTimer.mark("tasks loaded");
+        return loaded;
+    }
+
+    /**
+     * Block until the tasks have been loaded. Returns at once if they already are.
+     */
+    public void awaitLoad() {
+        if (tasks == null) {
+            tasks = loading.join();
+        }
+    }
+
+    /**
+     * Report whether the tasks have finished loading.
+     *
+     * @return true if commands can run without waiting
+     */
+    public boolean isLoaded() {
+        return loading.isDone();
+    }
+    /**
+     * Make a bare "list" show only the first page, for front ends that cannot display
+     * very long responses.
+     *
+     * @param pageSize tasks per page, or 0 to list everything
+     */
+    public void setListPageSize(int pageSize) {
+        assert pageSize >= 0: "Page size must not be negative";
+        listPageSize = pageSize;
     }
+
+    /**
+     * Publish this instance's metrics over JMX, under "exactly:type=Metrics,name=<name>".
+     * They are withdrawn again by {@link #close()}.
+     *
+     * @param name the name to publish under, e.g. a session name
+     */
+    public void registerMetrics(String name) {
+        metrics.register(name);
+    }
+
     /**
      * Return the welcome banner shown when the application starts.
      *
@@ -467,45 +1702,156 @@ public class Exactly {
     /**
      * Processes a single user input and returns Exactly’s reply.
      *
+     * Safe to call from several threads. Each command that may change the list runs as
+     * one write, from its checks through the change to its journal record, and queries
+     * see the list as it was before or after each write, never in between.
+     *
      * @param input the raw command entered by the user
      * @return the full formatted response including dividers
      */
     public String getResponse(String input) {
         assert input != null: "Input must not be null";
+        awaitLoad();
+        long start = metrics.start();
+        Command command = Parser.parse(input);
+        metrics.recordParse(start);
+        if (command.type == Command.Type.LIST) {
+            // A listing may be served from a snapshot, so it never waits for a writer
+            return tasks.read(() -> execute(command, start));
+        }
+        if (QUERIES.contains(command.type)) {
+            // Lookups cost what they match against the live indexes; a snapshot would copy the whole list
+            return tasks.write(() -> execute(command, start));
+        }
+        return tasks.write(() -> {
+            if (isBatchUnsaved) {
+                checkpoint();
+            }
+            int modCount = tasks.getModCount();
+            String response = execute(command, start);
+            // Failed commands leave the list untouched, so there is nothing to write
+            if (tasks.getModCount() != modCount) {
+                storage.persist(tasks.writerView());
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Run a sequence of commands as one batch, persisting only at checkpoints.
+     *
+     * Commands are executed lazily, one per call to {@code next()} on the returned iterator.
+     * Instead of journaling or saving after every command, a full snapshot is written every
+     * {@code checkpointInterval} commands and once the commands are exhausted, or on
+     * {@link #close()} if the iterator is abandoned before then.
+     *
+     * @param commands           the raw commands to execute, in order
+     * @param checkpointInterval commands between snapshots, or 0 to save only at the end
+     * @return an iterator over the responses, one per command
+     */
+    public Iterator < String > getResponses(Iterator < String > commands, int checkpointInterval) {
+        assert commands != null: "Commands must not be null";
+        assert checkpointInterval >= 0: "Checkpoint interval must not be negative";
+        return new Iterator < String > () {
+            private int sinceCheckpoint;
+
+            @Override
+            public boolean hasNext() {
+                awaitLoad();
+                boolean hasMore = commands.hasNext();
+                if (!hasMore) {
+                    tasks.write(() -> {
+                        if (isBatchUnsaved) checkpoint();
+                        return null;
+                    });
+                }
+                return hasMore;
+            }
+
+            @Override
+            public String next() {
+                String input = commands.next();
+                awaitLoad();
+                return tasks.write(() -> {
+                    long start = metrics.start();
+                    Command command = Parser.parse(input);
+                    metrics.recordParse(start);
+                    int modCount = tasks.getModCount();
+                    isBatching = true;
+                    String response;
+                    try {
+                        response = execute(command, start);
+                    } finally {
+                        isBatching = false;
+                    }
+                    isBatchUnsaved |= tasks.getModCount() != modCount;
+                    if (checkpointInterval > 0 && ++sinceCheckpoint >= checkpointInterval) {
+                        sinceCheckpoint = 0;
+                        if (isBatchUnsaved) checkpoint();
+                    }
+                    return response;
+                });
+            }
+        };
+    }
+
+    /** Write a full snapshot covering changes made by batch commands; call inside tasks.write. */
+    private void checkpoint() {
+        storage.save(tasks.writerView());
+        isBatchUnsaved = false;
+    }
+
+    /**
+     * Execute one command and build its response, without persisting the result.
+     *
+     * @param command the parsed command
+     * @param start   when parsing began, from {@link Metrics#start()}
+     * @return the full formatted response including dividers
+     */
+    private String execute(Command command, long start) {
         StringBuilder output = new StringBuilder();
         appendHeader(output);
 
-        String[] tokens = Parser.parse(input);
-        assert tokens.length > 0: "Parser should return at least one token";
-        String command = tokens[0];
         try {
-            switch (command) {
-            case "bye":
+            switch (command.type) {
+            case BYE:
                 processBye(output);
                 break;
-            case "list":
-                processList(output);
+            case LIST:
+                processList(command, output);
                 break;
-            case "mark":
-                processMark(tokens, output);
+            case MARK:
+                processMark(command, output);
                 break;
-            case "unmark":
-                processUnmark(tokens, output);
+            case UNMARK:
+                processUnmark(command, output);
                 break;
-            case "todo":
-                processTodo(tokens, output);
+            case TODO:
+                processTodo(command, output);
                 break;
-            case "deadline":
-                processDeadline(tokens, output);
+            case DEADLINE:
+                processDeadline(command, output);
                 break;
-            case "event":
-                processEvent(tokens, output);
+            case EVENT:
+                processEvent(command, output);
                 break;
-            case "delete":
-                processDelete(tokens, output);
+            case DELETE:
+                processDelete(command, output);
                 break;
-            case "find":
-                processFind(tokens, output);
+            case FIND:
+                processFind(command, output);
+                break;
+            case DUE:
+                processDue(command, output);
+                break;
+            case ON:
+                processOn(command, output);
+                break;
+            case CONFLICTS:
+                processConflicts(command, output);
+                break;
+            case STATS:
+                metrics.appendReport(output);
                 break;
             default:
                 output.append(" Huh? I don't understand what you said!\n");
@@ -513,8 +1859,8 @@ public class Exactly {
         } catch (Exception e) {
             output.append(" Error: ").append(e.getMessage()).append("\n");
         }
+        metrics.recordCommand(command.type, start);
         appendFooter(output);
-        storage.save(tasks.getTasks());
         return output.toString();
     }
 
@@ -541,29 +1887,88 @@ public class Exactly {
      * @param sb the StringBuilder to append to
      */
     private void processBye(StringBuilder sb) {
+        storage.flush();
         sb.append(" Bye! Keep crushing it and never settle for less!\n");
     }
     /**
-     * Handle the "list" command by appending the current task list.
+     * Handle the "list" command by appending the current task list, or one page of it
+     * for "list <page>" and "list [page] --page-size <n>".
      *
-     * @param sb the StringBuilder to append to
+     * Words that are neither a number nor the page-size flag are ignored, as they were
+     * before paging existed, so "list all" still lists everything.
+     *
+     * @param command the parsed command; its args are "[page] [--page-size <n>]"
+     * @param sb      the StringBuilder to append to
      */
-    private void processList(StringBuilder sb) {
-        sb.append(tasks.listTasks());
+    private void processList(Command command, StringBuilder sb) {
+        int page = 0;
+        int pageSize = listPageSize;
+        boolean isCustomSize = false;
+        List < String > args = Parser.words(command.args);
+        for (int i = 0; i < args.size(); i++) {
+            if (args.get(i).equals("--page-size") && i + 1 < args.size()) {
+                pageSize = Integer.parseInt(args.get(++i));
+                isCustomSize = true;
+                if (pageSize < 1) {
+                    sb.append(" Huh? A page needs at least one task!\n");
+                    return;
+                }
+            } else if (isNumber(args.get(i))) {
+                page = Integer.parseInt(args.get(i));
+                if (page < 1) {
+                    sb.append(" Huh? Pages start at 1!\n");
+                    return;
+                }
+            }
+        }
+        if (page == 0 && pageSize == 0) {
+            sb.append(tasks.listTasks());
+            return;
+        }
+        page = Math.max(page, 1);
+        pageSize = pageSize == 0 ? DEFAULT_PAGE_SIZE : pageSize;
+        int pages = tasks.pageCount(pageSize);
+        if (page > pages) {
+            sb.append(" Huh? There is no page ").append(page).append("! Your list only has ")
+                    .append(pages).append(pages == 1 ? " page.\n" : " pages.\n");
+            return;
+        }
+        sb.append(tasks.listPage(page, pageSize));
+        if (page < pages) {
+            sb.append(" Type 'list ").append(page + 1);
+            if (isCustomSize) {
+                sb.append(" --page-size ").append(pageSize);
+            }
+            sb.append("' to see the next page.\n");
+        }
+    }
+    private static boolean isNumber(String word) {
+        int from = word.startsWith("-") || word.startsWith("+") ? 1 : 0;
+        if (from == word.length()) return false;
+        for (int i = from; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) return false;
+        }
+        return true;
     }
+
     /**
      * Handle the "mark" command to mark a task as done.
      *
-     * @param tokens the command tokens (["mark", "<index>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command; its args are a task number or a selection
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processMark(String[] tokens, StringBuilder sb) {
-        assert tokens.length > 1: "Mark command requires a task number";
-        int idx = Integer.parseInt(tokens[1].trim());
+    private void processMark(Command command, StringBuilder sb) {
+        if (Parser.isSelection(command.args)) {
+            processMarkAll(command.args, true, sb);
+            return;
+        }
+        int idx = Integer.parseInt(command.args);
         if (idx < 1 || idx > tasks.size()) {
             sb.append(" Huh? That task number doesn't exist! Check and try again!\n");
         } else {
-            tasks.get(idx - 1).markAsDone();
+            if (tasks.markAsDone(idx - 1)) {
+                if (!isBatching) storage.logMark(idx - 1, true);
+            }
             sb.append(" Awesome! I've marked this task as done:\n    ")
                     .append(tasks.get(idx - 1)).append("\n");
         }
@@ -571,28 +1976,64 @@ public class Exactly {
     /**
      * Handle the "unmark" command to mark a task as not done.
      *
-     * @param tokens the command tokens (["unmark", "<index>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command; its args are a task number or a selection
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processUnmark(String[] tokens, StringBuilder sb) {
-        assert tokens.length > 1: "Unmark command requires a task number";
-        int idx = Integer.parseInt(tokens[1].trim());
+    private void processUnmark(Command command, StringBuilder sb) {
+        if (Parser.isSelection(command.args)) {
+            processMarkAll(command.args, false, sb);
+            return;
+        }
+        int idx = Integer.parseInt(command.args);
         if (idx < 1 || idx > tasks.size()) {
             sb.append(" That task number is off! Check and try again!\n");
         } else {
-            tasks.get(idx - 1).unmark();
+            if (tasks.unmark(idx - 1)) {
+                if (!isBatching) storage.logMark(idx - 1, false);
+            }
             sb.append(" Got it! I've marked this task as not done yet:\n    ")
                     .append(tasks.get(idx - 1)).append("\n");
         }
     }
+
+    /**
+     * Handle "mark" and "unmark" with several task numbers, e.g. "mark 1-500".
+     *
+     * @param spec   the selection, see {@link #select(String)}
+     * @param isDone whether to mark the tasks done or not done
+     * @param sb     the StringBuilder to append the result to
+     */
+    private void processMarkAll(String spec, boolean isDone, StringBuilder sb) {
+        BitSet selected = select(spec);
+        int changed = tasks.markAll(selected, isDone);
+        if (changed > 0 && !isBatching) storage.logMarkAll(selected, isDone);
+        int count = selected.cardinality();
+        sb.append(isDone ? " Awesome! I've marked " : " Got it! I've marked ")
+                .append(count).append(count == 1 ? " task as " : " tasks as ")
+                .append(isDone ? "done" : "not done yet").append("!\n");
+        if (changed < count) {
+            sb.append(" (").append(count - changed).append(" of them already ")
+                    .append(count - changed == 1 ? "was" : "were").append(isDone ? " done.)\n" : " not done.)\n");
+        }
+    }
+
+    /**
+     * Resolve a bulk selection: task numbers and ranges such as "3,7,9-20", or "done".
+     *
+     * @param spec the selection text
+     * @return zero-based positions of the selected tasks
+     */
+    private BitSet select(String spec) {
+        return spec.equals("done") ? tasks.doneTasks() : Parser.parseIndices(spec, tasks.size());
+    }
     /**
      * Handle the "todo" command by creating and adding a Todo task.
      *
-     * @param tokens the command tokens (["todo", "<description>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command; its args are the description
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processTodo(String[] tokens, StringBuilder sb) {
-        String desc = tokens.length < 2 ? "" : tokens[1].trim();
+    private void processTodo(Command command, StringBuilder sb) {
+        String desc = command.args;
         if (desc.isEmpty()) {
             sb.append(" Huh? The description for a todo task cannot be empty! Please give me a proper task!\n");
         } else {
@@ -603,74 +2044,209 @@ public class Exactly {
     /**
      * Handle the "deadline" command by creating and adding a Deadline task.
      *
-     * @param tokens the command tokens (["deadline", "<desc> /by <date>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command ("<desc> /by <date>")
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processDeadline(String[] tokens, StringBuilder sb) {
-        String inputStr = tokens.length < 2 ? "" : tokens[1].trim();
-        String[] parts = inputStr.split(" /by ");
-        if (inputStr.isEmpty() || parts.length != 2 || parts[0].trim().isEmpty() || parts[1].trim().isEmpty()) {
+    private void processDeadline(Command command, StringBuilder sb) {
+        if (command.description.isEmpty() || command.by == null || command.by.isEmpty() || command.hasRepeatedFlag) {
             sb.append(" Nope - a deadline command must have a description and a '/by' time! Please use: deadline <description> /by <yyyy-MM-dd>\n");
         } else {
-            handleAdd(new Deadline(parts[0].trim(), parts[1].trim()), sb);
+            handleAdd(new Deadline(command.description, command.by), sb);
         }
     }
 
     /**
      * Handle the "event" command by creating and adding an Event task.
      *
-     * @param tokens the command tokens (["event", "<desc> /from <start> /to <end>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command ("<desc> /from <start> /to <end>", flags in any order)
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processEvent(String[] tokens, StringBuilder sb) {
-        String inputStr = tokens.length < 2 ? "" : tokens[1].trim();
-        String[] fromParts = inputStr.split(" /from ");
-        if (inputStr.isEmpty() || fromParts.length != 2 || fromParts[0].trim().isEmpty()) {
+    private void processEvent(Command command, StringBuilder sb) {
+        if (command.description.isEmpty() || command.from == null || command.hasRepeatedFlag) {
             sb.append(" Nope - an event command must include a description and a start time using '/from'! Format: event <description> /from <start> /to <end>\n");
         } else {
-            String descEvt = fromParts[0].trim();
-            String[] toParts = fromParts[1].split(" /to ");
-            if (toParts.length != 2 || toParts[0].trim().isEmpty() || toParts[1].trim().isEmpty()) {
+            if (command.to == null || command.from.isEmpty() || command.to.isEmpty()) {
                 sb.append(" Nope - The event command is missing '/to' or has empty times! Format: event <description> /from <start> /to <end>\n");
             } else {
-                handleAdd(new Event(descEvt, toParts[0].trim(), toParts[1].trim()), sb);
+                Event event = new Event(command.description, command.from, command.to);
+                int size = tasks.size();
+                handleAdd(event, sb);
+                if (tasks.size() > size) {
+                    appendClashes(tasks.conflicts(event), sb);
+                }
             }
         }
     }
 
+    /**
+     * Warn about events that overlap a newly added one, showing the first few.
+     *
+     * @param clashes the overlapping events
+     * @param sb      the StringBuilder to append the warning to
+     */
+    private void appendClashes(List < Task > clashes, StringBuilder sb) {
+        if (clashes.isEmpty()) return;
+        sb.append(" Heads up! It overlaps with ").append(clashes.size())
+                .append(clashes.size() == 1 ? " other event:\n" : " other events:\n");
+        int shown = Math.min(clashes.size(), 3);
+        for (int i = 0; i < shown; i++) {
+            sb.append("    ").append(clashes.get(i)).append("\n");
+        }
+        if (clashes.size() > shown) {
+            sb.append("    ...and ").append(clashes.size() - shown).append(" more.\n");
+        }
+    }
+
     /**
      * Handle the "delete" command by removing a task.
      *
-     * @param tokens the command tokens (["delete", "<index>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command; its args are a task number or a selection
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processDelete(String[] tokens, StringBuilder sb) {
-        assert tokens.length > 1: "Delete command requires a task number";
-        int idx = Integer.parseInt(tokens[1].trim());
+    private void processDelete(Command command, StringBuilder sb) {
+        if (Parser.isSelection(command.args)) {
+            processDeleteAll(command.args, sb);
+            return;
+        }
+        int idx = Integer.parseInt(command.args);
         if (idx < 1 || idx > tasks.size()) {
             sb.append(" Whoops! That task number doesn't exist! Check and try again!\n");
         } else {
             Task removed = tasks.remove(idx - 1);
+            if (!isBatching) storage.logDelete(idx - 1);
             sb.append(" Noted. I've removed this task:\n    ")
                     .append(removed).append("\n")
                     .append(" Now you have ").append(tasks.size()).append(" tasks in the list.\n");
         }
     }
 
+    /**
+     * Handle "delete" with several task numbers, e.g. "delete 3,7,9-20" or "delete done".
+     *
+     * @param spec the selection, see {@link #select(String)}
+     * @param sb   the StringBuilder to append the result to
+     */
+    private void processDeleteAll(String spec, StringBuilder sb) {
+        BitSet selected = select(spec);
+        if (selected.isEmpty()) {
+            sb.append(" Nothing to remove - none of your tasks are done yet!\n");
+            return;
+        }
+        int count = tasks.removeAll(selected).size();
+        if (!isBatching) storage.logDeleteAll(selected);
+        sb.append(" Noted. I've removed ").append(count).append(count == 1 ? " task.\n" : " tasks.\n")
+                .append(" Now you have ").append(tasks.size()).append(" tasks in the list.\n");
+    }
+
+    /**
+     * Handle the "due" command by listing deadlines due on a date, before a date,
+     * or within the next few days, soonest first.
+     *
+     * @param command the parsed command; its args are "<date>", "before <date>" or "next <n>d"
+     * @param sb      the StringBuilder to append the result to
+     */
+    private void processDue(Command command, StringBuilder sb) {
+        String arg = command.args;
+        List < Task > due;
+        String when;
+        try {
+            if (arg.startsWith("before ")) {
+                LocalDate date = LocalDate.parse(arg.substring("before ".length()).trim());
+                due = tasks.dueBetween(LocalDate.MIN, date.minusDays(1));
+                when = "before " + date;
+            } else if (arg.startsWith("next ") && arg.endsWith("d")) {
+                int days = Integer.parseInt(arg.substring("next ".length(), arg.length() - 1).trim());
+                if (days < 1) throw new NumberFormatException("Days must be positive");
+                LocalDate today = LocalDate.now();
+                // N days starting with today, so "next 1d" is today alone
+                due = tasks.dueBetween(today, today.plusDays(days - 1));
+                when = "in the next " + days + (days == 1 ? " day" : " days");
+            } else {
+                LocalDate date = LocalDate.parse(arg);
+                due = tasks.dueBetween(date, date);
+                when = "on " + date;
+            }
+        } catch (RuntimeException e) {
+            sb.append(" Huh? Try: due <yyyy-MM-dd>, due before <yyyy-MM-dd> or due next <n>d\n");
+            return;
+        }
+        if (due.isEmpty()) {
+            sb.append(" Nothing is due ").append(when).append("!\n");
+            return;
+        }
+        sb.append(" Here are the tasks due ").append(when).append(":\n");
+        for (int i = 0; i < due.size(); i++) {
+            sb.append(" ").append(i + 1).append(". ").append(due.get(i)).append("\n");
+        }
+    }
+
+    /**
+     * Handle the "on" command by listing the events taking place on a date,
+     * by start time, followed by the deadlines due that day.
+     *
+     * @param command the parsed command; its args are "<yyyy-MM-dd>"
+     * @param sb      the StringBuilder to append the result to
+     */
+    private void processOn(Command command, StringBuilder sb) {
+        LocalDate date;
+        try {
+            date = LocalDate.parse(command.args);
+        } catch (RuntimeException e) {
+            sb.append(" Huh? Try: on <yyyy-MM-dd>\n");
+            return;
+        }
+        List < Task > agenda = tasks.eventsBetween(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+        agenda.addAll(tasks.dueBetween(date, date));
+        if (agenda.isEmpty()) {
+            sb.append(" Nothing on ").append(date).append("!\n");
+            return;
+        }
+        sb.append(" Here's what's on ").append(date).append(":\n");
+        for (int i = 0; i < agenda.size(); i++) {
+            sb.append(" ").append(i + 1).append(". ").append(agenda.get(i)).append("\n");
+        }
+    }
+
+    /**
+     * Handle the "conflicts" command by listing the events that overlap a given event.
+     *
+     * @param command the parsed command; its args are a task number
+     * @param sb      the StringBuilder to append the result to
+     */
+    private void processConflicts(Command command, StringBuilder sb) {
+        int idx = Integer.parseInt(command.args);
+        if (idx < 1 || idx > tasks.size()) {
+            sb.append(" Huh? That task number doesn't exist! Check and try again!\n");
+            return;
+        }
+        Task task = tasks.get(idx - 1);
+        if (!(task instanceof Event) || !((Event) task).isTimed()) {
+            sb.append(" Huh? Only events with dates, like '/from 2025-05-01 2pm /to 4pm', can clash!\n");
+            return;
+        }
+        List < Task > clashes = tasks.conflicts((Event) task);
+        if (clashes.isEmpty()) {
+            sb.append(" All clear! Nothing overlaps with:\n    ").append(task).append("\n");
+            return;
+        }
+        sb.append(" These events overlap with ").append(task).append(":\n");
+        for (int i = 0; i < clashes.size(); i++) {
+            sb.append(" ").append(i + 1).append(". ").append(clashes.get(i)).append("\n");
+        }
+    }
+
     /**
      * Handle the "find" command by searching for tasks matching a keyword.
      *
-     * @param tokens the command tokens (["find", "<keyword>"])
-     * @param sb     the StringBuilder to append the result to
+     * @param command the parsed command; its args are the keyword
+     * @param sb      the StringBuilder to append the result to
      */
-    private void processFind(String[] tokens, StringBuilder sb) {
-        String kw = tokens.length < 2 ? "" : tokens[1].trim();
+    private void processFind(Command command, StringBuilder sb) {
+        String kw = command.args;
         if (kw.isEmpty()) {
             sb.append(" Please provide a keyword to search for.\n");
         } else {
-            List < Task > match = tasks.getTasks().stream()
-                    .filter(t -> t.description.contains(kw))
-                    .collect(Collectors.toList());
+            List < Task > match = tasks.find(kw);
             if (match.isEmpty()) {
                 sb.append(" No matching tasks found!\n");
             } else {
@@ -689,10 +2265,11 @@ public class Exactly {
      * @param sb      the StringBuilder to append user feedback to
      */
     private void handleAdd(Task newTask, StringBuilder sb) {
-        if (tasks.getTasks().contains(newTask)) {
+        if (tasks.contains(newTask)) {
             sb.append(" Whoa! You already have this task! Won't add duplicate.\n");
         } else {
             tasks.add(newTask);
+            if (!isBatching) storage.logAdd(newTask);
             sb.append(" Got it. I've added this task:\n    ")
                     .append(tasks.get(tasks.size() - 1)).append("\n")
                     .append(" Now you have ").append(tasks.size()).append(" tasks in the list!\n");
@@ -706,23 +2283,141 @@ public class Exactly {
      */
     public void run() {
         ui.showWelcome();
+        StartupTimer.mark("welcome shown");
         boolean exit = false;
         while (!exit) {
             String input = ui.readCommand();
             ui.showLine();
-            System.out.print(getResponse(input));
+            long start = metrics.start();
+            Command command = Parser.parse(input);
+            if (command.type == Command.Type.LIST && command.args.isEmpty() && listPageSize == 0) {
+                // Write rows straight to stdout instead of building one giant response,
+                // timed like any other command
+                metrics.recordParse(start);
+                ui.showLines(streamList());
+                metrics.recordCommand(Command.Type.LIST, start);
+            } else {
+                System.out.print(getResponse(input));
+            }
             ui.showLine();
             if ("bye".equals(input.trim())) exit = true;
         }
         ui.close();
+        close();
+    }
+
+    /**
+     * Stream the full response to "list" line by line, with the same content as
+     * {@code getResponse("list")}.
+     *
+     * @return the response lines, without trailing newlines
+     */
+    public Stream < String > streamList() {
+        awaitLoad();
+        String divider = "____________________________________________________________";
+        Stream < String > body = tasks.read(() -> tasks.size() == 0
+                ? Stream.of(TaskList.EMPTY_MESSAGE.stripTrailing())
+                : Stream.concat(Stream.of(TaskList.LIST_HEADER.stripTrailing()), tasks.rows()));
+        return Stream.concat(Stream.concat(Stream.of(divider), body), Stream.of(divider));
+    }
+
+    /**
+     * Block until every change made so far has been written to disk.
+     */
+    public void flush() {
+        awaitLoad();
+        storage.flush();
+    }
+
+    /**
+     * Flush pending writes and release the background writer; call on shutdown.
+     */
+    public void close() {
+        // Let a background load finish so it cannot race the shutdown of the storage
+        TaskList loaded = loading.exceptionally(e -> null).join();
+        if (loaded == null) {
+            storage.close();
+        } else {
+            // A command still running on another thread finishes its write first
+            loaded.write(() -> {
+                // A batch whose iterator was abandoned early has not been saved yet
+                if (isBatchUnsaved) checkpoint();
+                storage.close();
+                return null;
+            });
+        }
+        metrics.unregister();
+    }
+
+    /**
+     * Execute every line of a command file as one batch, writing the responses to stdout.
+     *
+     * @param commandFile        path to a file with one command per line
+     * @param checkpointInterval commands between snapshots, or 0 to save only at the end
+     * @throws IOException if the command file cannot be read
+     */
+    public void runBatch(String commandFile, int checkpointInterval) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(commandFile), StandardCharsets.UTF_8)) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out,
+                    StandardCharsets.UTF_8)));
+            Iterator < String > commands = in.lines().map(String::trim).iterator();
+            Iterator < String > responses = getResponses(commands, checkpointInterval);
+            while (responses.hasNext()) {
+                out.print(responses.next());
+            }
+            out.flush();
+        }
+        close();
     }
 
     /**
      * The application's entry point.
      *
-     * @param args expects a single argument: the storage file path
+     * Usage: {@code Exactly [data file] [--batch <command file> [--checkpoint <n>]]}
+     * or {@code Exactly [data file] --serve <port> [--sessions]}.
+     * Without {@code --batch} or {@code --serve} the interactive console is started.
+     *
+     * @param args optional storage file path and batch-mode or server-mode flags
      */
-    public static void main(String[] args) {
-        new Exactly("data/exactly.txt").run();
+    public static void main(String[] args) throws IOException {
+        String filePath = "data/exactly.txt";
+        String batchFile = null;
+        int checkpointInterval = 0;
+        int port = -1;
+        boolean isShared = true;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch") && i + 1 < args.length) {
+                batchFile = args[++i];
+            } else if (args[i].equals("--checkpoint") && i + 1 < args.length) {
+                checkpointInterval = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--serve") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--sessions")) {
+                isShared = false;
+            } else {
+                filePath = args[i];
+            }
+        }
+        if (port >= 0) {
+            serve(filePath, port, isShared);
+            return;
+        }
+        // The console can greet the user while a large file is still loading
+        Exactly exactly = new Exactly(filePath, true, batchFile == null);
+        exactly.registerMetrics("default");
+        if (batchFile == null) {
+            exactly.run();
+        } else {
+            exactly.runBatch(batchFile, checkpointInterval);
+        }
+    }
+
+    private static void serve(String filePath, int port, boolean isShared) throws IOException {
+        ExactlyServer server = new ExactlyServer(filePath, port, isShared);
+        // Runs until the process is stopped; the hook makes sure every session is saved
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        System.out.println("Exactly is listening on http://localhost:" + server.getPort() + "/command"
+                + (isShared ? " (shared list)" : " (one list per session)"));
     }
 }
\ No newline at end of file
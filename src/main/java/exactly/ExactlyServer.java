@@ -0,0 +1,329 @@
+package exactly;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves Exactly over HTTP on the loopback interface, for scripts and other local tools.
+ *
+ * Each {@code POST /command} carries one or more commands, one per line, and is answered
+ * with their responses in the same order, exactly as {@link Exactly#getResponse(String)}
+ * would produce them; sending many lines in one request pipelines them over a single
+ * round trip. The session is named by the {@code session} query parameter. Sessions
+ * either share one task list or each get their own data file next to the shared one.
+ * Commands against the same list run one at a time; different sessions run in parallel.
+ *
+ * Only local clients are served: a request must name this server as localhost, 127.0.0.1
+ * or [::1] in its Host header, and any Origin header must be one of those too, so a web
+ * page cannot reach the server through the browser. Request bodies are capped at
+ * {@link #MAX_BODY_BYTES}; idle sessions are closed, and at most a fixed number stay open.
+ */
+class ExactlyServer {
+    static final String DEFAULT_SESSION = "default";
+    static final int MAX_BODY_BYTES = 1 << 20;
+    static final int MAX_SESSIONS = 64;
+    static final long SESSION_IDLE_NANOS = TimeUnit.MINUTES.toNanos(30);
+    private static final int MAX_SESSION_LENGTH = 64;
+    private static final List < String > LOCAL_HOSTS = List.of("localhost", "127.0.0.1", "[::1]");
+
+    private final String filePath;
+    private final boolean isShared;
+    private final int maxSessions;
+    private final long idleNanos;
+    // Guarded by this, like isStopped; a session is in the map while it is still being opened
+    private final Map < String, CompletableFuture < Session > > sessions = new HashMap < > ();
+    private boolean isStopped;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /** One open task list and when a request last used it. Requests lock it while they run. */
+    static class Session {
+        final Exactly exactly;
+        volatile long lastUsed = System.nanoTime();
+        // Set under the session's lock once it has been closed
+        boolean isClosed;
+
+        Session(Exactly exactly) {
+            this.exactly = exactly;
+        }
+    }
+
+    /**
+     * Create a server bound to localhost; call {@link #start()} to accept requests.
+     *
+     * @param filePath data file of the shared list; per-session files go in a "sessions" folder beside it
+     * @param port     TCP port to listen on, or 0 for any free port
+     * @param isShared whether every session works on the same task list
+     * @throws IOException if the port cannot be bound
+     */
+    public ExactlyServer(String filePath, int port, boolean isShared) throws IOException {
+        this(filePath, port, isShared, MAX_SESSIONS, SESSION_IDLE_NANOS);
+    }
+
+    /**
+     * Create a server with its own session limits.
+     *
+     * @param filePath    data file of the shared list
+     * @param port        TCP port to listen on, or 0 for any free port
+     * @param isShared    whether every session works on the same task list
+     * @param maxSessions most sessions open at once
+     * @param idleNanos   how long a session may go unused before it is closed
+     * @throws IOException if the port cannot be bound
+     */
+    ExactlyServer(String filePath, int port, boolean isShared, int maxSessions, long idleNanos) throws IOException {
+        assert filePath != null && !filePath.isEmpty(): "File path must not be null or empty";
+        assert maxSessions > 0: "At least one session must be allowed";
+        this.filePath = filePath;
+        this.isShared = isShared;
+        this.maxSessions = maxSessions;
+        this.idleNanos = idleNanos;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/command", this::handle);
+        executor = newExecutor();
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Use a virtual thread per request where the JVM has them (Java 21+), so a slow
+     * client never ties up a pooled thread; fall back to a growable pool elsewhere.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "exactly-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /** Start accepting requests in the background. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Return the port the server listens on, useful when it was created with port 0.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop accepting requests, then flush and close every session's storage.
+     * Requests still in flight finish first; later ones cannot open a session.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        synchronized (this) {
+            isStopped = true;
+            for (CompletableFuture < Session > session: sessions.values()) {
+                // A session still being opened is closed as soon as it is ready
+                session.thenAccept(ExactlyServer::close);
+            }
+            sessions.clear();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!isLocal(exchange)) {
+                send(exchange, 403, " Huh? Only tools on this computer may send commands.\n");
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, " Huh? Send commands with POST, one per line.\n");
+                return;
+            }
+            String name = sessionOf(exchange.getRequestURI());
+            if (name == null) {
+                send(exchange, 400, " Huh? Session names may only use letters, digits, '-' and '_'.\n");
+                return;
+            }
+            byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                send(exchange, 413, " Whoa! Send at most " + MAX_BODY_BYTES + " bytes of commands at a time.\n");
+                return;
+            }
+            String body = new String(bytes, StandardCharsets.UTF_8);
+            StringBuilder response = new StringBuilder();
+            while (true) {
+                Session session = session(isShared ? DEFAULT_SESSION : name);
+                if (session == null) {
+                    send(exchange, 503, isStopping()
+                            ? " Sorry! The server is shutting down.\n"
+                            : " Sorry! Too many sessions are open. Try again later.\n");
+                    return;
+                }
+                synchronized (session) {
+                    // Closed as idle or by stop() since we looked it up; look again
+                    if (session.isClosed) continue;
+                    for (String line: body.split("\n")) {
+                        String input = line.strip();
+                        if (!input.isEmpty()) {
+                            response.append(session.exactly.getResponse(input));
+                        }
+                    }
+                    session.lastUsed = System.nanoTime();
+                }
+                break;
+            }
+            send(exchange, 200, response.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Check that a request came from a local tool: its Host header names this server on
+     * the loopback interface, and it carries no Origin other than such a name.
+     *
+     * @return true if the request may be served
+     */
+    private boolean isLocal(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isLocalHost(host)) return false;
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        return origin == null || origin.startsWith("http://") && isLocalHost(origin.substring("http://".length()));
+    }
+
+    private boolean isLocalHost(String host) {
+        for (String name: LOCAL_HOSTS) {
+            if (host.equalsIgnoreCase(name + ":" + getPort())) return true;
+        }
+        return false;
+    }
+
+    private synchronized boolean isStopping() {
+        return isStopped;
+    }
+
+    /**
+     * Return the open session with the given name, opening it if need be. Sessions idle
+     * for too long are closed first to make room. Loading a session's tasks happens
+     * outside the server's lock, so it never holds up requests for other sessions;
+     * requests for the same session wait for it.
+     *
+     * @param name the session name
+     * @return the session, or null if the server has stopped or too many sessions are open
+     */
+    Session session(String name) {
+        CompletableFuture < Session > pending;
+        boolean isOpener = false;
+        List < Session > idle = new ArrayList < > ();
+        synchronized (this) {
+            if (isStopped) return null;
+            pending = sessions.get(name);
+            if (pending == null) {
+                long now = System.nanoTime();
+                for (Iterator < CompletableFuture < Session > > it = sessions.values().iterator(); it.hasNext();) {
+                    Session open = it.next().getNow(null);
+                    if (open != null && now - open.lastUsed > idleNanos) {
+                        idle.add(open);
+                        it.remove();
+                    }
+                }
+                if (sessions.size() < maxSessions) {
+                    pending = new CompletableFuture < > ();
+                    sessions.put(name, pending);
+                    isOpener = true;
+                }
+            }
+        }
+        // Closing waits for any request still using the session, so do it outside the lock too
+        for (Session session: idle) {
+            close(session);
+        }
+        if (pending == null) return null;
+        if (isOpener) {
+            try {
+                pending.complete(new Session(open(name)));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    sessions.remove(name, pending);
+                }
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+        Session session = pending.join();
+        session.lastUsed = System.nanoTime();
+        return session;
+    }
+
+    /** Close a session's storage once any request using it has finished. */
+    private static void close(Session session) {
+        synchronized (session) {
+            if (!session.isClosed) {
+                session.isClosed = true;
+                session.exactly.close();
+            }
+        }
+    }
+
+    private Exactly open(String session) {
+        String path = filePath;
+        if (!session.equals(DEFAULT_SESSION)) {
+            path = Paths.get(filePath).toAbsolutePath().resolveSibling("sessions")
+                    .resolve(session + ".txt").toString();
+        }
+        Exactly exactly = new Exactly(path, true);
+        exactly.registerMetrics(session);
+        return exactly;
+    }
+
+    /**
+     * Read the session name from the query string.
+     *
+     * @return the session name, the default session if none is given, or null if the name is invalid
+     */
+    static String sessionOf(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null) return DEFAULT_SESSION;
+        for (String param: query.split("&")) {
+            if (param.startsWith("session=")) {
+                String name = param.substring("session=".length());
+                if (name.isEmpty() || name.length() > MAX_SESSION_LENGTH) return null;
+                for (int i = 0; i < name.length(); i++) {
+                    char c = name.charAt(i);
+                    boolean isAllowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                            || c == '-' || c == '_';
+                    if (!isAllowed) return null;
+                }
+                return name;
+            }
+        }
+        return DEFAULT_SESSION;
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package exactly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram inverted index over task descriptions.
+ *
+ * Every task gets an increasing sequence number when it is added, and each posting
+ * list holds the sequence numbers of the tasks whose description contains that
+ * trigram. Because a TaskList only ever appends, sequence order is list order, so a
+ * query walks the rarest trigram of the keyword and verifies each candidate with
+ * {@link String#contains}, giving exactly the same matches, in the same order, as a scan.
+ * Removals are lazy: dead entries are skipped and a posting is compacted once half of it is dead.
+ */
+class KeywordIndex {
+    /** Keywords shorter than this cannot be answered from the index. */
+    static final int GRAM = 3;
+
+    private final Map < Long, Posting > postings = new HashMap < > ();
+    private final Map < Integer, Task > live = new HashMap < > ();
+    private int nextSeq;
+
+    /**
+     * Index a task that was appended to the list.
+     *
+     * @param task the task to index
+     * @return the sequence number identifying this entry
+     */
+    public int add(Task task) {
+        int seq = nextSeq++;
+        live.put(seq, task);
+        for (long gram: grams(task.description)) {
+            postings.computeIfAbsent(gram, g -> new Posting()).append(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Drop the entry with the given sequence number.
+     *
+     * @param seq the number returned by {@link #add(Task)}
+     */
+    public void remove(int seq) {
+        Task task = live.remove(seq);
+        if (task == null) return;
+        for (long gram: grams(task.description)) {
+            Posting p = postings.get(gram);
+            if (++p.dead * 2 > p.size) {
+                p.compact(live);
+                if (p.size == 0) postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Find all live tasks whose description contains the keyword, in list order.
+     *
+     * @param keyword the substring to look for; must be at least {@link #GRAM} characters
+     * @return the matching tasks
+     */
+    public List < Task > find(String keyword) {
+        assert keyword.length() >= GRAM: "Keyword too short for the trigram index";
+        Posting rarest = null;
+        for (long gram: grams(keyword)) {
+            Posting p = postings.get(gram);
+            if (p == null) return new ArrayList < > ();
+            if (rarest == null || p.size - p.dead < rarest.size - rarest.dead) rarest = p;
+        }
+        List < Task > matches = new ArrayList < > ();
+        for (int i = 0; i < rarest.size; i++) {
+            Task t = live.get(rarest.seqs[i]);
+            if (t != null && t.description.contains(keyword)) {
+                matches.add(t);
+            }
+        }
+        return matches;
+    }
+
+    private static Set < Long > grams(String text) {
+        Set < Long > grams = new HashSet < > ();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /** Growable, ascending array of sequence numbers. */
+    private static class Posting {
+        int[] seqs = new int[4];
+        int size;
+        int dead;
+
+        void append(int seq) {
+            if (size == seqs.length) seqs = Arrays.copyOf(seqs, size * 2);
+            seqs[size++] = seq;
+        }
+
+        void compact(Map < Integer, Task > live) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (live.containsKey(seqs[i])) seqs[n++] = seqs[i];
+            }
+            size = n;
+            dead = 0;
+        }
+    }
+}
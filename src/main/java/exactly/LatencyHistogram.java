@@ -0,0 +1,114 @@
+package exactly;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, laid out like HdrHistogram.
+ *
+ * Values below {@link #SUB_BUCKETS} get a bucket each; above that, every power of two
+ * is split into {@code SUB_BUCKETS} equal buckets, so any recorded value is reported
+ * within about 6% of its true size. Recording is one atomic increment on a fixed-size
+ * array, and any number of threads may record while another reads percentiles.
+ */
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // One row of sub-buckets per power of two from 2^SUB_BITS up to 2^62
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one duration.
+     *
+     * @param nanos the duration; negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Return the number of recorded durations.
+     *
+     * @return the count
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Return the mean of the recorded durations.
+     *
+     * @return the mean in nanoseconds, or 0 if nothing was recorded
+     */
+    public long mean() {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * Return the longest recorded duration.
+     *
+     * @return the maximum in nanoseconds, or 0 if nothing was recorded
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Return the duration at or below which the given share of recordings fall.
+     *
+     * @param percentile share of recordings, between 0 and 100
+     * @return the upper edge of the bucket holding that recording, capped at the maximum,
+     *     or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        assert percentile >= 0 && percentile <= 100: "Percentile must be between 0 and 100";
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperEdgeOf(i), max.get());
+        }
+        // Recorders raced ahead of the count read above
+        return max.get();
+    }
+
+    /**
+     * Forget every recorded duration.
+     * Recordings made while this runs may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long upperEdgeOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_BUCKETS | sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -12,13 +12,16 @@ import javafx.stage.Stage;
  */
 public class Main extends Application {
 
-    private Exactly exactly = new Exactly("data/exactly.txt");
+    private Exactly exactly;
+    private MainWindow controller;
 
     /**
      * Start the JavaFX application by loading MainWindow.fxml.
+     * The tasks are loaded in the background, so the window shows without waiting for them.
      */
     @Override
     public void start(Stage stage) {
+        exactly = new Exactly("data/exactly.txt", true, true);
         try {
             FXMLLoader loader = new FXMLLoader(getClass()
                     .getResource("/view/MainWindow.fxml"));
@@ -31,16 +34,35 @@ public class Main extends Application {
             stage.setScene(scene);
             stage.setResizable(true);
 
+            // A single chat bubble cannot show a huge list, so "list" pages in the GUI
+            exactly.setListPageSize(Exactly.DEFAULT_PAGE_SIZE);
+            exactly.registerMetrics("default");
+
             // Inject the Exactly instance into the controller
-            MainWindow controller = loader.getController();
+            controller = loader.getController();
             controller.setExactly(exactly);
 
             stage.show();
+            StartupTimer.mark("window shown");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Finish queued commands and flush pending saves before the application exits.
+     * Closing waits for a command that is still running, so the two cannot race.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+        if (exactly != null) {
+            exactly.close();
+        }
+    }
+
     /**
      * Launch the JavaFX application.
      */
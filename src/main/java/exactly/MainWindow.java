@@ -1,31 +1,55 @@
 package exactly;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.VBox;
 import javafx.scene.image.Image;
 
 /**
  * Controller for the main GUI.
  */
 public class MainWindow extends AnchorPane {
-    @FXML private ScrollPane scrollPane;
-    @FXML private VBox dialogContainer;
+    @FXML private ListView<ChatMessage> dialogList;
     @FXML private TextField userInput;
     @FXML private Button sendButton;
+    @FXML private ProgressIndicator busyIndicator;
 
     private Exactly exactly;
+    // Decoded in the background so the window can show before the avatars are ready
     private final Image userImage  = new Image(this.getClass()
-            .getResourceAsStream("/images/DaUser.png"));
+            .getResource("/images/DaUser.png").toExternalForm(), true);
     private final Image botImage   = new Image(this.getClass()
-            .getResourceAsStream("/images/DaBot.png"));
+            .getResource("/images/DaBot.png").toExternalForm(), true);
+    // Runs commands one at a time, in the order they were entered, off the FX thread
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "exactly-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    // Set -Dexactly.chatSpill=<file> to keep messages that scroll out of the window; the worker writes them
+    private final ChatHistory history = new ChatHistory(ChatHistory.DEFAULT_WINDOW, spillFile(), worker);
+    // Commands submitted but not yet answered; only touched on the FX thread
+    private int inFlight;
+
+    private static Path spillFile() {
+        String path = System.getProperty("exactly.chatSpill");
+        return path == null ? null : Paths.get(path);
+    }
 
     @FXML
     public void initialize() {
-        scrollPane.vvalueProperty().bind(dialogContainer.heightProperty());
+        dialogList.setItems(history.getMessages());
+        dialogList.setCellFactory(list -> new ChatCell(list, userImage, botImage));
     }
 
     /**
@@ -33,19 +57,74 @@ public class MainWindow extends AnchorPane {
      */
     public void setExactly(Exactly ex) {
         exactly = ex;
-        dialogContainer.getChildren()
-               .add(DialogBox.getBotDialog(exactly.getWelcomeMessage(), botImage));
+        history.add(new ChatMessage(exactly.getWelcomeMessage(), false));
+        if (!exactly.isLoaded()) {
+            // Keep the spinner up while the tasks load; commands typed meanwhile queue behind this
+            setInFlight(inFlight + 1);
+            worker.execute(() -> {
+                exactly.awaitLoad();
+                Platform.runLater(() -> setInFlight(inFlight - 1));
+            });
+        }
     }
 
-    /** Handle user input from TextField or Send button. */
+    /**
+     * Handle user input from TextField or Send button.
+     * The command is queued on the worker thread and its reply is added once it is ready,
+     * so the window stays responsive however long the command takes.
+     */
     @FXML
     private void handleUserInput() {
-        String input    = userInput.getText();
-        String response = exactly.getResponse(input);
-        dialogContainer.getChildren().addAll(
-                DialogBox.getUserDialog(input, userImage),
-                DialogBox.getBotDialog(response, botImage)
-        );
+        String input = userInput.getText();
         userInput.clear();
+        history.add(new ChatMessage(input, true));
+        scrollToEnd();
+        setInFlight(inFlight + 1);
+        worker.execute(() -> {
+            String response;
+            try {
+                response = exactly.getResponse(input);
+            } catch (RuntimeException e) {
+                response = " Error: " + e.getMessage() + "\n";
+            }
+            String reply = response;
+            Platform.runLater(() -> {
+                history.add(new ChatMessage(reply, false));
+                scrollToEnd();
+                setInFlight(inFlight - 1);
+            });
+        });
+    }
+
+    private void setInFlight(int count) {
+        inFlight = count;
+        busyIndicator.setVisible(count > 0);
+    }
+
+    private void scrollToEnd() {
+        dialogList.scrollTo(history.getMessages().size() - 1);
+    }
+
+    /**
+     * Let queued commands finish, then stop the worker thread. If they take longer than
+     * ten seconds, the commands not yet started are dropped, but the running one is
+     * always waited for, so the tasks are never saved while a command is changing them.
+     */
+    public void shutdown() {
+        history.close();
+        worker.shutdown();
+        try {
+            if (worker.awaitTermination(10, TimeUnit.SECONDS)) return;
+            int dropped = worker.shutdownNow().size();
+            System.out.println("Warning: Commands took too long to finish; dropped " + dropped
+                    + " that had not started.");
+            while (!worker.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.out.println("Warning: Still waiting for the last command before saving.");
+            }
+        } catch (InterruptedException e) {
+            worker.shutdownNow();
+            System.out.println("Warning: Interrupted while waiting for commands to finish.");
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,314 @@
+package exactly;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for one Exactly instance.
+ *
+ * Callers take a start time with {@link #start()} and pass it to one of the record
+ * methods once the work is done. When metrics are disabled, {@code start()} returns 0
+ * without reading the clock and every record method returns at once, so the cost is a
+ * field read per call. Recording is lock-free and safe from any thread, which lets the
+ * background saver time its writes while commands are being timed on another thread.
+ */
+class Metrics implements MetricsMXBean {
+    /** System property that switches metrics off when set to "false". */
+    static final String ENABLED_PROPERTY = "exactly.metrics";
+
+    // Must be initialized before DISABLED, whose constructor reads it
+    private static final Command.Type[] TYPES = Command.Type.values();
+
+    /** Shared instance for callers that do not collect metrics. */
+    static final Metrics DISABLED = new Metrics(false);
+
+    private final boolean isEnabled;
+    private final LatencyHistogram[] commands = new LatencyHistogram[TYPES.length];
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram save = new LatencyHistogram();
+    private final LatencyHistogram journal = new LatencyHistogram();
+    private final LatencyHistogram load = new LatencyHistogram();
+    private final AtomicLong savedBytes = new AtomicLong();
+    private final AtomicLong loadedBytes = new AtomicLong();
+    // Written once per load, read by "stats" and JMX
+    private volatile int loadDistinctStrings;
+    private volatile int loadSharedStrings;
+    private volatile long loadSharedBytes;
+    private volatile IntSupplier taskCount = () -> 0;
+    private volatile IntSupplier journalRecords = () -> 0;
+    private ObjectName registeredName;
+
+    /**
+     * Create a set of metrics.
+     *
+     * @param isEnabled whether to record anything
+     */
+    Metrics(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Create a set of metrics, enabled unless the {@value #ENABLED_PROPERTY} system
+     * property is "false".
+     *
+     * @return the new metrics
+     */
+    static Metrics fromSystemProperty() {
+        return new Metrics(!"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)));
+    }
+
+    /**
+     * Set where the size gauges read from.
+     *
+     * @param taskCount      the number of tasks in the list
+     * @param journalRecords the number of records in the journal
+     */
+    void setGauges(IntSupplier taskCount, IntSupplier journalRecords) {
+        this.taskCount = taskCount;
+        this.journalRecords = journalRecords;
+    }
+
+    /**
+     * Return a start time for one of the record methods.
+     *
+     * @return the current time in nanoseconds, or 0 if metrics are disabled
+     */
+    long start() {
+        return isEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time taken to parse one command.
+     *
+     * @param start the value {@link #start()} returned before parsing
+     */
+    void recordParse(long start) {
+        if (isEnabled) parse.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record the time taken to parse and run one command.
+     *
+     * @param type  the kind of command
+     * @param start the value {@link #start()} returned before parsing
+     */
+    void recordCommand(Command.Type type, long start) {
+        if (isEnabled) commands[type.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record one snapshot write.
+     *
+     * @param start the value {@link #start()} returned before writing
+     * @param bytes the size of the written file
+     */
+    void recordSave(long start, long bytes) {
+        if (!isEnabled) return;
+        save.record(System.nanoTime() - start);
+        savedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Record one journal append.
+     *
+     * @param start the value {@link #start()} returned before appending
+     */
+    void recordJournal(long start) {
+        if (isEnabled) journal.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record one load of the data file.
+     *
+     * @param start the value {@link #start()} returned before loading
+     * @param bytes the size of the data file
+     */
+    void recordLoad(long start, long bytes) {
+        if (!isEnabled) return;
+        load.record(System.nanoTime() - start);
+        loadedBytes.set(bytes);
+    }
+
+    /**
+     * Record how much text the last load shared instead of copying.
+     *
+     * @param distinct    the number of distinct strings loaded
+     * @param shared      the number of repeated strings that reuse one of them
+     * @param sharedBytes the estimated heap the repeats would have taken as copies
+     */
+    void recordSharing(int distinct, int shared, long sharedBytes) {
+        if (!isEnabled) return;
+        loadDistinctStrings = distinct;
+        loadSharedStrings = shared;
+        loadSharedBytes = sharedBytes;
+    }
+
+    /**
+     * Publish these metrics on the platform MBean server, replacing any earlier
+     * registration under the same name.
+     *
+     * @param name the value of the "name" key, e.g. a session name
+     */
+    synchronized void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("exactly:type=Metrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            System.out.println("Error registering metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Withdraw these metrics from the platform MBean server, if they were registered.
+     */
+    synchronized void unregister() {
+        if (registeredName == null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) server.unregisterMBean(registeredName);
+        } catch (JMException e) {
+            System.out.println("Error unregistering metrics: " + e.getMessage());
+        }
+        registeredName = null;
+    }
+
+    /**
+     * Append a human-readable summary, as shown by the "stats" command.
+     *
+     * @param sb the StringBuilder to append to
+     */
+    void appendReport(StringBuilder sb) {
+        if (!isEnabled) {
+            sb.append(" Stats are switched off. Start me without -D").append(ENABLED_PROPERTY)
+                    .append("=false to collect them.\n");
+            return;
+        }
+        sb.append(" Here's how I've been doing:\n");
+        sb.append("    tasks: ").append(getTaskCount())
+                .append(", journal records: ").append(getJournalRecords()).append("\n");
+        sb.append(String.format("    %-10s %8s %9s %9s %9s %9s\n", "timer", "count", "mean us", "p50 us",
+                "p99 us", "max us"));
+        for (Map.Entry < String, LatencyHistogram > entry: timers().entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            sb.append(String.format("    %-10s %8d %9d %9d %9d %9d\n", entry.getKey(), h.count(),
+                    micros(h.mean()), micros(h.percentile(50)), micros(h.percentile(99)), micros(h.max())));
+        }
+        sb.append("    saved ").append(savedBytes.get()).append(" bytes, last loaded ")
+                .append(loadedBytes.get()).append(" bytes\n");
+        sb.append("    load shared ").append(loadSharedStrings).append(" repeated strings among ")
+                .append(loadDistinctStrings).append(" distinct ones, saving about ")
+                .append(loadSharedBytes / 1024).append(" KB\n");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    @Override
+    public int getTaskCount() {
+        return taskCount.getAsInt();
+    }
+
+    @Override
+    public int getJournalRecords() {
+        return journalRecords.getAsInt();
+    }
+
+    @Override
+    public Map < String, Long > getCounts() {
+        return summarize(LatencyHistogram::count);
+    }
+
+    @Override
+    public Map < String, Long > getMeanMicros() {
+        return summarize(h -> micros(h.mean()));
+    }
+
+    @Override
+    public Map < String, Long > getP50Micros() {
+        return summarize(h -> micros(h.percentile(50)));
+    }
+
+    @Override
+    public Map < String, Long > getP99Micros() {
+        return summarize(h -> micros(h.percentile(99)));
+    }
+
+    @Override
+    public Map < String, Long > getMaxMicros() {
+        return summarize(h -> micros(h.max()));
+    }
+
+    @Override
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    @Override
+    public long getLoadedBytes() {
+        return loadedBytes.get();
+    }
+
+    @Override
+    public int getLoadSharedStrings() {
+        return loadSharedStrings;
+    }
+
+    @Override
+    public long getLoadSharedBytes() {
+        return loadSharedBytes;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram h: commands) {
+            h.reset();
+        }
+        parse.reset();
+        save.reset();
+        journal.reset();
+        load.reset();
+        savedBytes.set(0);
+    }
+
+    /** Return the timers that have recorded something, commands first, by name. */
+    private Map < String, LatencyHistogram > timers() {
+        Map < String, LatencyHistogram > timers = new LinkedHashMap < > ();
+        for (Command.Type type: TYPES) {
+            LatencyHistogram h = commands[type.ordinal()];
+            if (h.count() > 0) timers.put(type == Command.Type.UNKNOWN ? "unknown" : type.keyword, h);
+        }
+        if (parse.count() > 0) timers.put("parse", parse);
+        if (save.count() > 0) timers.put("save", save);
+        if (journal.count() > 0) timers.put("journal", journal);
+        if (load.count() > 0) timers.put("load", load);
+        return timers;
+    }
+
+    private Map < String, Long > summarize(ToLongFunction < LatencyHistogram > stat) {
+        Map < String, Long > values = new LinkedHashMap < > ();
+        for (Map.Entry < String, LatencyHistogram > entry: timers().entrySet()) {
+            values.put(entry.getKey(), stat.applyAsLong(entry.getValue()));
+        }
+        return values;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,50 @@
+package exactly;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}, e.g. for JConsole or VisualVM.
+ *
+ * Timings are keyed by timer name: one per command word, plus "parse", "save",
+ * "journal" and "load". Timers that have recorded nothing are left out.
+ */
+public interface MetricsMXBean {
+    /** Return whether timings are being recorded. */
+    boolean isEnabled();
+
+    /** Return the number of tasks in the list. */
+    int getTaskCount();
+
+    /** Return the number of records in the journal since the last snapshot. */
+    int getJournalRecords();
+
+    /** Return how many times each timer has recorded. */
+    Map < String, Long > getCounts();
+
+    /** Return the mean duration of each timer, in microseconds. */
+    Map < String, Long > getMeanMicros();
+
+    /** Return the median duration of each timer, in microseconds. */
+    Map < String, Long > getP50Micros();
+
+    /** Return the 99th-percentile duration of each timer, in microseconds. */
+    Map < String, Long > getP99Micros();
+
+    /** Return the longest duration of each timer, in microseconds. */
+    Map < String, Long > getMaxMicros();
+
+    /** Return the total size of all snapshots written. */
+    long getSavedBytes();
+
+    /** Return the size of the data file when it was last loaded. */
+    long getLoadedBytes();
+
+    /** Return how many repeated strings the last load shared instead of copying. */
+    int getLoadSharedStrings();
+
+    /** Return the estimated heap the last load saved by sharing repeated strings. */
+    long getLoadSharedBytes();
+
+    /** Forget everything recorded so far. */
+    void reset();
+}
@@ -0,0 +1,104 @@
+package exactly;
+
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C checksums of single lines of the text data file.
+ *
+ * A checksummed line ends with " | #" and the eight hex digits of the CRC32C of the
+ * UTF-8 bytes before that suffix. Free text never contains an unescaped " | ", so the
+ * suffix cannot be confused with part of a description. The UTF-8 bytes are encoded
+ * into a reused buffer, so checking a line allocates nothing.
+ */
+class RecordChecksum {
+    /** Length of the " | #xxxxxxxx" suffix. */
+    static final int SUFFIX_LENGTH = 12;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final CRC32C crc = new CRC32C();
+    private byte[] bytes = new byte[256];
+
+    /**
+     * Return the checksum of the first {@code end} characters of a record.
+     *
+     * @param text the record
+     * @param end  the number of characters to cover
+     * @return the CRC32C of their UTF-8 encoding
+     */
+    public int of(CharSequence text, int end) {
+        if (bytes.length < end * 3) bytes = new byte[Math.max(end * 3, bytes.length * 2)];
+        int n = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[n++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[n++] = (byte) (0xC0 | c >> 6);
+                bytes[n++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                bytes[n++] = (byte) (0xF0 | cp >> 18);
+                bytes[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                bytes[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                bytes[n++] = (byte) (0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates encode as '?', as String.getBytes does
+                bytes[n++] = '?';
+            } else {
+                bytes[n++] = (byte) (0xE0 | c >> 12);
+                bytes[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[n++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        crc.reset();
+        crc.update(bytes, 0, n);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Append the checksum suffix for the record already in the builder.
+     *
+     * @param sb the builder holding exactly one record
+     */
+    public void append(StringBuilder sb) {
+        int value = of(sb, sb.length());
+        sb.append(" | #");
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            sb.append(HEX[value >>> shift & 0xF]);
+        }
+    }
+
+    /**
+     * Report whether a record ends with a well-formed checksum suffix.
+     *
+     * @param text the record
+     * @return true if the last {@value #SUFFIX_LENGTH} characters are " | #" and eight hex digits
+     */
+    public static boolean hasSuffix(CharSequence text) {
+        int start = text.length() - SUFFIX_LENGTH;
+        if (start < 0 || text.charAt(start) != ' ' || text.charAt(start + 1) != '|'
+                || text.charAt(start + 2) != ' ' || text.charAt(start + 3) != '#') {
+            return false;
+        }
+        for (int i = start + 4; i < text.length(); i++) {
+            if (Character.digit(text.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check a record that ends with a checksum suffix against its content.
+     *
+     * @param text a record for which {@link #hasSuffix(CharSequence)} is true
+     * @return true if the checksum matches
+     */
+    public boolean matches(CharSequence text) {
+        int end = text.length() - SUFFIX_LENGTH;
+        int expected = 0;
+        for (int i = end + 4; i < text.length(); i++) {
+            expected = expected << 4 | Character.digit(text.charAt(i), 16);
+        }
+        return of(text, end) == expected;
+    }
+}
@@ -0,0 +1,618 @@
+package exactly;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Task file that is updated in place through a memory-mapped buffer.
+ *
+ * Layout: a fixed 32-byte header (magic "EXSL", a version byte, then the offset where
+ * the records end, the number of live and deleted records, and the bytes the deleted
+ * ones take up), followed by one record per task. A record is a flag byte (task type
+ * in the low bits, 0x20 deleted, 0x40 timed, 0x80 done), an int payload length, the
+ * payload: the length-prefixed UTF-8 description, then the due epoch day for a
+ * deadline, or the from/to texts and, if timed, start and end epoch minutes for an event;
+ * and an int CRC32C of the type and timed bits, the length and the payload. The done and
+ * deleted bits are left out, so flipping them is still a one-byte write.
+ *
+ * The file offset of every live record is kept in list order, so marking a task flips
+ * one bit of its flag byte, deleting sets the deleted bit and appending writes past the
+ * last record. Each of these costs the same however long the list is, and is forced to
+ * disk before the method returns. Deleted records
+ * stay in the file as tombstones until they take up more room than the live ones; then
+ * {@link #compactInBackground()} copies the live records into a new file and swaps it in.
+ * All methods are synchronized, so a command that arrives during compaction waits for it.
+ *
+ * A record whose checksum does not match is copied to "path.quarantine" in hex and turned
+ * into a tombstone on load. A record whose length runs past the end cannot be skipped, so
+ * it and everything after it are quarantined and cut off, and later appends stay reachable. If an append fails, the stored offsets no
+ * longer match the caller's list; the file then reports {@link #isStale()} and ignores
+ * further changes until {@link #rewrite(List)} replaces it.
+ */
+class SlotFile {
+    static final byte[] MAGIC = {'E', 'X', 'S', 'L'};
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    /** Deleted bytes below which the file is never compacted. */
+    static final long MIN_COMPACT_BYTES = 64 * 1024;
+
+    private static final int END_OFFSET = 8;
+    private static final int LIVE_OFFSET = 16;
+    private static final int DELETED_OFFSET = 20;
+    private static final int DEAD_BYTES_OFFSET = 24;
+    private static final int RECORD_HEADER = 5;
+    private static final int CHECKSUM = 4;
+    private static final int TODO = 0;
+    private static final int DEADLINE = 1;
+    private static final int EVENT = 2;
+    private static final int TYPE_MASK = 0x0F;
+    private static final int DELETED = 0x20;
+    private static final int TIMED = 0x40;
+    private static final int DONE = 0x80;
+    // Flag bits covered by a record's checksum; the others change in place
+    private static final int CHECKED_FLAGS = TYPE_MASK | TIMED;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // File offset of each live record, in list order
+    private int[] offsets = new int[16];
+    private int size;
+    private int end;
+    private int deleted;
+    private long deadBytes;
+    private ExecutorService compactor;
+    private boolean isCompactionQueued;
+    private boolean isStale;
+
+    /**
+     * Open a slot file, creating an empty one if it does not exist. Call
+     * {@link #load(List, StringDictionary)} before changing it.
+     *
+     * @param path the file to open
+     * @throws IOException if the file cannot be opened or is not a slot file
+     */
+    public SlotFile(Path path) throws IOException {
+        this.path = path;
+        if (!Files.exists(path)) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            write(path, List.of());
+        }
+        open();
+    }
+
+    /**
+     * Write a complete slot file holding the given tasks, replacing any file at that path
+     * only once the new one is fully written.
+     *
+     * @param path  the file to write
+     * @param tasks the tasks to store
+     * @throws IOException if writing fails
+     */
+    public static void write(Path path, List < Task > tasks) throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            out.position(HEADER_SIZE);
+            long end = HEADER_SIZE;
+            for (Task t: tasks) {
+                ByteBuffer record = encode(t);
+                end += record.remaining();
+                while (record.hasRemaining()) out.write(record);
+            }
+            header.put(MAGIC).put((byte) VERSION);
+            header.putLong(END_OFFSET, end).putInt(LIVE_OFFSET, tasks.size());
+            header.position(0);
+            out.write(header, 0);
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Storage.moveDurably(temp, path);
+    }
+
+    /**
+     * Read every live task, remembering where each one is stored.
+     * Records past a damaged one are left out.
+     *
+     * @param tasks   the list the decoded tasks are appended to
+     * @param strings the dictionary to intern text into
+     */
+    public synchronized void load(List < Task > tasks, StringDictionary strings) {
+        scan(tasks, strings);
+    }
+
+    /**
+     * Rebuild the offsets of the live records and the tombstone counts, decoding the live
+     * records if a list is given. A damaged record ends the scan: it and everything after
+     * it are quarantined and cut off.
+     */
+    private void scan(List < Task > tasks, StringDictionary strings) {
+        size = 0;
+        deleted = 0;
+        deadBytes = 0;
+        int at = HEADER_SIZE;
+        while (at < end) {
+            int flags = buffer.get(at) & 0xFF;
+            int length = at + RECORD_HEADER <= end ? buffer.getInt(at + 1) : -1;
+            if (length < 0 || (long) at + RECORD_HEADER + length + CHECKSUM > end) {
+                System.out.println("Warning: Slot file is damaged after " + size + " tasks.");
+                quarantine(at, end);
+                end = at;
+                break;
+            }
+            int stored = buffer.getInt(at + RECORD_HEADER + length);
+            // Tombstones are never read again, so their checksum does not matter
+            boolean isIntact = (flags & DELETED) != 0 || stored == checksum(flags, buffer.slice(at + 1, 4 + length));
+            if (isIntact && (flags & DELETED) == 0) {
+                try {
+                    if (tasks != null) tasks.add(decode(flags, at + RECORD_HEADER, strings));
+                    addOffset(at);
+                } catch (RuntimeException e) {
+                    isIntact = false;
+                }
+            }
+            if (!isIntact) {
+                // The length still leads to the next record, so only this one is lost
+                System.out.println("Warning: Slot file has a damaged task after " + size + " tasks.");
+                quarantine(at, at + recordSize(length));
+                buffer.put(at, (byte) (flags | DELETED));
+                flags |= DELETED;
+            }
+            if ((flags & DELETED) != 0) {
+                deleted++;
+                deadBytes += recordSize(length);
+            }
+            at += recordSize(length);
+        }
+        writeCounts();
+    }
+
+    /** Append the bytes between the given offsets to the quarantine file. */
+    private void quarantine(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# ").append(LocalDateTime.now()).append(": ").append(to - from)
+                .append(" damaged bytes from offset ").append(from).append(" of ").append(path).append("\n");
+        for (int i = from; i < to; i++) {
+            sb.append(Character.forDigit(buffer.get(i) >> 4 & 0xF, 16)).append(Character.forDigit(buffer.get(i) & 0xF, 16));
+        }
+        Path quarantine = Paths.get(path + ".quarantine");
+        try {
+            Files.writeString(quarantine, sb.append("\n"), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            System.out.println("Warning: Moved " + (to - from) + " damaged bytes to " + quarantine + ".");
+        } catch (IOException e) {
+            System.out.println("Error quarantining damaged tasks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Store a task after the last record.
+     *
+     * @param task the task that was appended to the list
+     * @throws IOException if the file cannot grow
+     */
+    public synchronized void append(Task task) throws IOException {
+        if (isStale) return;
+        ByteBuffer record = encode(task);
+        int length = record.remaining();
+        try {
+            ensureCapacity((long) end + length);
+        } catch (IOException e) {
+            // The caller's list already holds the task, so the offsets no longer line up with it
+            isStale = true;
+            throw e;
+        }
+        buffer.put(end, record, 0, length);
+        addOffset(end);
+        end += length;
+        writeCounts();
+        buffer.force();
+    }
+
+    /**
+     * Flip the done flag of the task at the given position in place.
+     *
+     * @param index  zero-based position of the task
+     * @param isDone the new done state
+     */
+    public synchronized void setDone(int index, boolean isDone) {
+        if (isStale) return;
+        flipDone(index, isDone);
+        buffer.force();
+    }
+
+    /**
+     * Flip the done flag of several tasks in place.
+     *
+     * @param indices zero-based positions of the tasks
+     * @param isDone  the new done state
+     */
+    public synchronized void setDoneAll(BitSet indices, boolean isDone) {
+        if (isStale) return;
+        for (int i = indices.nextSetBit(0); i >= 0; i = indices.nextSetBit(i + 1)) {
+            flipDone(i, isDone);
+        }
+        buffer.force();
+    }
+
+    private void flipDone(int index, boolean isDone) {
+        int at = offsets[index];
+        int flags = buffer.get(at) & 0xFF;
+        buffer.put(at, (byte) (isDone ? flags | DONE : flags & ~DONE));
+    }
+
+    /**
+     * Turn the record of the task at the given position into a tombstone.
+     *
+     * @param index zero-based position of the removed task
+     */
+    public synchronized void delete(int index) {
+        BitSet selected = new BitSet();
+        selected.set(index);
+        deleteAll(selected);
+    }
+
+    /**
+     * Turn the records of several tasks into tombstones.
+     *
+     * @param indices zero-based positions of the removed tasks, before removal
+     */
+    public synchronized void deleteAll(BitSet indices) {
+        if (isStale) return;
+        int kept = indices.nextSetBit(0);
+        if (kept < 0) return;
+        for (int i = kept; i < size; i++) {
+            if (indices.get(i)) {
+                int at = offsets[i];
+                buffer.put(at, (byte) (buffer.get(at) | DELETED));
+                deleted++;
+                deadBytes += recordSize(buffer.getInt(at + 1));
+            } else {
+                offsets[kept++] = offsets[i];
+            }
+        }
+        size = kept;
+        writeCounts();
+        buffer.force();
+    }
+
+    /**
+     * Report whether tombstones take up enough of the file to be worth compacting.
+     *
+     * @return true if the deleted records outweigh the live ones
+     */
+    public synchronized boolean needsCompaction() {
+        return !isStale && deadBytes >= MIN_COMPACT_BYTES && deadBytes * 2 > end - HEADER_SIZE;
+    }
+
+    /**
+     * Queue a compaction on a background thread unless one is already queued.
+     */
+    public synchronized void compactInBackground() {
+        if (isCompactionQueued) return;
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "exactly-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        isCompactionQueued = true;
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.out.println("Error saving tasks: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Copy the live records into a new file and swap it in, dropping every tombstone.
+     *
+     * @throws IOException if the new file cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        isCompactionQueued = false;
+        if (deleted == 0 || isStale) return;
+        Path temp = Paths.get(path + ".tmp");
+        int[] moved = new int[Math.max(16, size)];
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int at = HEADER_SIZE;
+            for (int i = 0; i < size; i++) {
+                int length = recordSize(buffer.getInt(offsets[i] + 1));
+                ByteBuffer record = buffer.slice(offsets[i], length);
+                while (record.hasRemaining()) out.write(record, at + record.position());
+                moved[i] = at;
+                at += length;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).put((byte) VERSION);
+            header.putLong(END_OFFSET, at).putInt(LIVE_OFFSET, size);
+            header.position(0);
+            out.write(header, 0);
+            out.force(true);
+        }
+        release();
+        try {
+            Storage.moveDurably(temp, path);
+            offsets = moved;
+        } finally {
+            // Map whichever file is in place now, the new one or the old one
+            open();
+        }
+    }
+
+    /**
+     * Replace the whole file with the given tasks, e.g. after a batch of unlogged changes.
+     *
+     * @param tasks the tasks to store
+     * @throws IOException if writing fails
+     */
+    public synchronized void rewrite(List < Task > tasks) throws IOException {
+        release();
+        try {
+            write(path, tasks);
+        } finally {
+            // Map whichever file is in place now, the new one or the old one
+            open();
+            scan(null, null);
+        }
+        isStale = false;
+    }
+
+    /**
+     * Report whether an append failed, so the file no longer matches the list and
+     * ignores changes until {@link #rewrite(List)} is called.
+     *
+     * @return true if the file needs a full rewrite
+     */
+    public synchronized boolean isStale() {
+        return isStale;
+    }
+
+    /**
+     * Return the number of live records.
+     *
+     * @return the number of tasks stored
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Push every change made through the mapping to the disk.
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * Wait for a queued compaction, write out pending changes and close the file.
+     */
+    public void close() {
+        ExecutorService c;
+        synchronized (this) {
+            c = compactor;
+            compactor = null;
+        }
+        if (c != null) {
+            c.shutdown();
+            try {
+                c.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (buffer == null) return;
+            try {
+                buffer.force();
+                release();
+            } catch (IOException e) {
+                System.out.println("Error saving tasks: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Map the file and read its header. */
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            check();
+        } catch (IOException e) {
+            // Release the file, so the caller can set it aside
+            release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the channel and unmap the buffer, so the file can be replaced or deleted;
+     * Windows refuses both while a mapping is open. The buffer must not be used again.
+     */
+    private void release() throws IOException {
+        MappedByteBuffer mapped = buffer;
+        buffer = null;
+        channel.close();
+        if (mapped != null) unmap(mapped);
+    }
+
+    /**
+     * Unmap a buffer at once rather than when it is garbage collected. Where the JDK does
+     * not allow this, the mapping is left for the collector.
+     */
+    private static void unmap(MappedByteBuffer mapped) {
+        try {
+            Class < ? > unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), mapped);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available on this JDK
+        }
+    }
+
+    private void check() throws IOException {
+        long length = channel.size();
+        if (length < HEADER_SIZE) throw new IOException("Slot file is too short");
+        if (length > Integer.MAX_VALUE) throw new IOException("Slot file is too large to map");
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) throw new IOException("Not a slot file");
+        }
+        int version = buffer.get(MAGIC.length);
+        if (version != VERSION) throw new IOException("Unsupported slot file version " + version);
+        long recordedEnd = buffer.getLong(END_OFFSET);
+        if (recordedEnd < HEADER_SIZE || recordedEnd > length) throw new IOException("Slot file header is damaged");
+        end = (int) recordedEnd;
+        deleted = buffer.getInt(DELETED_OFFSET);
+        deadBytes = buffer.getLong(DEAD_BYTES_OFFSET);
+    }
+
+    /** Grow the file, doubling its mapped size, until it can hold the given number of bytes. */
+    private void ensureCapacity(long needed) throws IOException {
+        if (needed <= buffer.capacity()) return;
+        long capacity = Math.max(needed, Math.max(4096, 2L * buffer.capacity()));
+        if (capacity > Integer.MAX_VALUE) {
+            if (needed > Integer.MAX_VALUE) throw new IOException("Slot file is full");
+            capacity = Integer.MAX_VALUE;
+        }
+        MappedByteBuffer old = buffer;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        unmap(old);
+    }
+
+    // The end offset is written last, so a record is only visible once it is complete
+    private void writeCounts() {
+        buffer.putInt(LIVE_OFFSET, size);
+        buffer.putInt(DELETED_OFFSET, deleted);
+        buffer.putLong(DEAD_BYTES_OFFSET, deadBytes);
+        buffer.putLong(END_OFFSET, end);
+    }
+
+    private void addOffset(int at) {
+        if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+        offsets[size++] = at;
+    }
+
+    private static ByteBuffer encode(Task t) {
+        byte[] description = t.description.getBytes(StandardCharsets.UTF_8);
+        int done = t.isDone ? DONE : 0;
+        ByteBuffer record;
+        if (t instanceof Deadline) {
+            record = ByteBuffer.allocate(recordSize(4 + description.length + 8));
+            record.put((byte) (DEADLINE | done)).putInt(4 + description.length + 8);
+            putString(record, description);
+            record.putLong(((Deadline) t).by.toEpochDay());
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            byte[] from = e.from.getBytes(StandardCharsets.UTF_8);
+            byte[] to = e.to.getBytes(StandardCharsets.UTF_8);
+            int length = 12 + description.length + from.length + to.length + (e.isTimed() ? 16 : 0);
+            record = ByteBuffer.allocate(recordSize(length));
+            record.put((byte) (EVENT | done | (e.isTimed() ? TIMED : 0))).putInt(length);
+            putString(record, description);
+            putString(record, from);
+            putString(record, to);
+            if (e.isTimed()) {
+                record.putLong(minute(e.start)).putLong(minute(e.end));
+            }
+        } else {
+            record = ByteBuffer.allocate(recordSize(4 + description.length));
+            record.put((byte) (TODO | done)).putInt(4 + description.length);
+            putString(record, description);
+        }
+        record.putInt(checksum(record.get(0), record.slice(1, record.position() - 1)));
+        record.flip();
+        return record;
+    }
+
+    private static int recordSize(int length) {
+        return RECORD_HEADER + length + CHECKSUM;
+    }
+
+    /**
+     * Return the checksum of a record.
+     *
+     * @param flags   the record's flag byte
+     * @param content the record's length and payload
+     */
+    private static int checksum(int flags, ByteBuffer content) {
+        CRC32C crc = new CRC32C();
+        crc.update(flags & CHECKED_FLAGS);
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    private Task decode(int flags, int at, StringDictionary strings) {
+        ByteBuffer payload = buffer.slice(at, buffer.getInt(at - 4));
+        String description = getString(payload, strings);
+        Task task;
+        switch (flags & TYPE_MASK) {
+        case DEADLINE:
+            task = new Deadline(description, LocalDate.ofEpochDay(payload.getLong()));
+            break;
+        case EVENT:
+            String from = getString(payload, strings);
+            String to = getString(payload, strings);
+            if ((flags & TIMED) != 0) {
+                LocalDateTime start = time(payload.getLong());
+                task = new Event(description, from, to, start, time(payload.getLong()));
+            } else {
+                task = new Event(description, from, to, null, null);
+            }
+            break;
+        case TODO:
+            task = new Todo(description);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown task type " + (flags & TYPE_MASK));
+        }
+        if ((flags & DONE) != 0) task.markAsDone();
+        return task;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        out.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer in, StringDictionary strings) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return strings.intern(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static long minute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime time(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+}
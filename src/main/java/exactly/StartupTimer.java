@@ -0,0 +1,33 @@
+package exactly;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Prints how long after JVM start each startup milestone was reached, when run with
+ * {@code -Dexactly.startupTiming=true}.
+ *
+ * Lines go to stderr as "[startup] window shown: 412 ms", so they can be compared
+ * across runs of the console and the GUI without mixing with the chat on stdout.
+ * When the property is not set nothing is measured, and the management classes used
+ * to read the JVM's uptime are never loaded.
+ */
+final class StartupTimer {
+    /** System property that turns the startup timings on. */
+    static final String PROPERTY = "exactly.startupTiming";
+
+    private static final boolean IS_ENABLED = Boolean.getBoolean(PROPERTY);
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Report that a startup milestone has been reached.
+     *
+     * @param milestone what just happened, e.g. "window shown"
+     */
+    static void mark(String milestone) {
+        if (!IS_ENABLED) return;
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.err.println("[startup] " + milestone + ": " + uptime + " ms");
+    }
+}
@@ -0,0 +1,25 @@
+package exactly;
+
+import java.util.Locale;
+
+/**
+ * Command-line tool that rewrites a data file between the text, binary and slot formats.
+ */
+public class StorageConverter {
+    /**
+     * Convert a data file.
+     *
+     * @param args the source path and format, then the target path and format,
+     *             e.g. {@code data/exactly.txt text data/exactly.bin binary}
+     */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.out.println("Usage: StorageConverter <from> <text|binary|slots> <to> <text|binary|slots>");
+            return;
+        }
+        Storage.Format fromFormat = Storage.Format.valueOf(args[1].toUpperCase(Locale.ROOT));
+        Storage.Format toFormat = Storage.Format.valueOf(args[3].toUpperCase(Locale.ROOT));
+        int count = Storage.convert(args[0], fromFormat, args[2], toFormat);
+        System.out.println("Converted " + count + " tasks from " + args[0] + " to " + args[2] + ".");
+    }
+}
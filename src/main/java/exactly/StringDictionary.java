@@ -0,0 +1,227 @@
+package exactly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for the free text of tasks.
+ *
+ * Every distinct string is stored once and given a small integer id, so a list with a
+ * million copies of "read book" holds one String and a million ints. Ids are dense and
+ * never reused for another string; a reference count per id tracks how many tasks use
+ * it, so callers can tell whether a string is in use without scanning.
+ *
+ * Loaders use {@link #intern(String)} to share one instance of each repeated string
+ * between the tasks they create, and keep count of the heap this saved. A
+ * {@link CompactTaskList} built from the same dictionary then finds every string
+ * already there.
+ *
+ * The first search for a keyword of at least {@link KeywordIndex#GRAM} characters
+ * builds a trigram index over the ids, kept up to date from then on, so later searches
+ * only check the strings that share the keyword's rarest trigram.
+ */
+class StringDictionary {
+    private final Map < String, Integer > ids = new HashMap < > ();
+    private final List < String > strings = new ArrayList < > ();
+    private int[] counts = new int[16];
+    // Repeated strings handed out by intern() or noted by a loader, and their estimated size
+    private int sharedCount;
+    private long sharedBytes;
+    // Ids of the strings containing each trigram, in ascending order; null until the first search
+    private Map < Long, int[] > grams;
+
+    /**
+     * Return the id of a string, adding it if it is new, and count one more use of it.
+     *
+     * @param text the string to encode
+     * @return its id
+     */
+    public int acquire(String text) {
+        Integer id = ids.get(text);
+        if (id == null) id = add(text);
+        counts[id]++;
+        return id;
+    }
+
+    /**
+     * Return the shared instance of a string, adding it if it is new. Does not count
+     * as a use, so strings that no task ends up holding are never reported as in use.
+     *
+     * @param text the string to intern
+     * @return the instance already in the dictionary, or text itself if it is new
+     */
+    public String intern(String text) {
+        Integer id = ids.get(text);
+        if (id == null) {
+            add(text);
+            return text;
+        }
+        noteShared(text);
+        return strings.get(id);
+    }
+
+    /**
+     * Count one more place that shares an existing string instead of holding its own
+     * copy, for loaders that resolve repeats themselves.
+     *
+     * @param text the shared string
+     */
+    public void noteShared(String text) {
+        sharedCount++;
+        sharedBytes += heapSize(text);
+    }
+
+    /**
+     * Return how many repeated strings were shared rather than copied.
+     *
+     * @return the number of copies avoided
+     */
+    public int sharedCount() {
+        return sharedCount;
+    }
+
+    /**
+     * Return an estimate of the heap the shared strings would have taken as copies.
+     *
+     * @return the bytes saved
+     */
+    public long sharedBytes() {
+        return sharedBytes;
+    }
+
+    private int add(String text) {
+        int id = strings.size();
+        ids.put(text, id);
+        strings.add(text);
+        if (id == counts.length) counts = Arrays.copyOf(counts, id * 2);
+        if (grams != null) indexGrams(id);
+        return id;
+    }
+
+    /** Append an id to the posting of each trigram of its string. Slot 0 holds the posting's length. */
+    private void indexGrams(int id) {
+        String text = strings.get(id);
+        for (int i = 0; i + KeywordIndex.GRAM <= text.length(); i++) {
+            long gram = gram(text, i);
+            int[] posting = grams.get(gram);
+            if (posting == null) {
+                posting = new int[4];
+            } else if (posting[posting[0]] == id) {
+                continue; // The trigram occurs earlier in the same string
+            } else if (posting[0] + 1 == posting.length) {
+                posting = Arrays.copyOf(posting, posting.length * 2);
+            }
+            posting[++posting[0]] = id;
+            grams.put(gram, posting);
+        }
+    }
+
+    private static long gram(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    /**
+     * Estimate the heap taken by a String and its array on a 64-bit JVM with compressed
+     * references and compact strings.
+     *
+     * @param text the string to measure
+     * @return the estimated size in bytes
+     */
+    static long heapSize(String text) {
+        boolean isLatin1 = true;
+        for (int i = 0; i < text.length() && isLatin1; i++) {
+            isLatin1 = text.charAt(i) <= 0xFF;
+        }
+        long array = 16 + (long) text.length() * (isLatin1 ? 1 : 2);
+        return 24 + ((array + 7) & ~7L);
+    }
+
+    /**
+     * Count one use fewer of the string with the given id.
+     *
+     * @param id an id returned by {@link #acquire(String)}
+     */
+    public void release(int id) {
+        assert counts[id] > 0: "Released a string that is not in use";
+        counts[id]--;
+    }
+
+    /**
+     * Return the string with the given id.
+     *
+     * @param id an id returned by {@link #acquire(String)}
+     * @return the shared instance of that string
+     */
+    public String get(int id) {
+        return strings.get(id);
+    }
+
+    /**
+     * Return the id of a string without adding it.
+     *
+     * @param text the string to look up
+     * @return its id, or -1 if it has never been encoded
+     */
+    public int idOf(String text) {
+        Integer id = ids.get(text);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Report how many tasks currently use the string with the given id.
+     *
+     * @param id an id returned by {@link #acquire(String)}
+     * @return the number of uses
+     */
+    public int uses(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Find the strings in use that contain the given text. Each distinct string is
+     * checked once, however many tasks share it.
+     *
+     * @param text the substring to search for
+     * @return the ids of the matching strings
+     */
+    public BitSet containing(String text) {
+        BitSet matches = new BitSet(strings.size());
+        if (text.length() < KeywordIndex.GRAM) {
+            // Too short to index; such keywords tend to match a large share of the strings anyway
+            for (int id = 0; id < strings.size(); id++) {
+                if (counts[id] > 0 && strings.get(id).contains(text)) matches.set(id);
+            }
+            return matches;
+        }
+        if (grams == null) {
+            grams = new HashMap < > ();
+            for (int id = 0; id < strings.size(); id++) {
+                indexGrams(id);
+            }
+        }
+        int[] rarest = null;
+        for (int i = 0; i + KeywordIndex.GRAM <= text.length(); i++) {
+            int[] posting = grams.get(gram(text, i));
+            if (posting == null) return matches;
+            if (rarest == null || posting[0] < rarest[0]) rarest = posting;
+        }
+        for (int k = 1; k <= rarest[0]; k++) {
+            int id = rarest[k];
+            if (counts[id] > 0 && strings.get(id).contains(text)) matches.set(id);
+        }
+        return matches;
+    }
+
+    /**
+     * Return the number of distinct strings encoded so far.
+     *
+     * @return the dictionary size
+     */
+    public int size() {
+        return strings.size();
+    }
+}
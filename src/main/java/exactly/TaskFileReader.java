@@ -0,0 +1,257 @@
+package exactly;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for the pipe-delimited data file.
+ *
+ * Lines are split on the literal " | " delimiter by a single scan over a reused
+ * line buffer, so no regex runs and no intermediate String is created per line or
+ * per flag field. A '|' or '\' inside a description is escaped with a backslash by
+ * {@link Storage#escape(String)}. Older versions escaped nothing, so a backslash
+ * followed by anything else is kept as it is, e.g. at the end of a description.
+ * Given a {@link StringDictionary}, repeated descriptions and event times share one
+ * String instead of keeping a copy per line.
+ *
+ * Files that start with {@link #CHECKSUM_HEADER} end every line with a CRC32C (see
+ * {@link RecordChecksum}); a line whose checksum is missing or wrong is skipped as
+ * damaged. Lines of older files without the header load unchecked.
+ */
+class TaskFileReader {
+    /** First line of a data file whose records all carry a checksum. */
+    static final String CHECKSUM_HEADER = "# exactly tasks v2, each line ends with its CRC32C";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_FIELDS = 5;
+
+    private final StringBuilder line = new StringBuilder(128);
+    private final StringBuilder field = new StringBuilder(64);
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private final StringDictionary strings;
+    private final RecordChecksum checksum = new RecordChecksum();
+    private final List < String > damaged = new ArrayList < > ();
+    // The checksum suffix cut off the current line, to restore it if the line turns out bad
+    private final char[] suffix = new char[RecordChecksum.SUFFIX_LENGTH];
+    private int fieldCount;
+    private int skipped;
+    private boolean isChecksummed;
+
+    /** Create a reader that gives every task its own strings. */
+    public TaskFileReader() {
+        this(null);
+    }
+
+    /**
+     * Create a reader that shares repeated strings through a dictionary.
+     *
+     * @param strings the dictionary to intern text into, or null to not intern
+     */
+    public TaskFileReader(StringDictionary strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Read every task record from the given reader, reporting bad lines by number.
+     *
+     * @param in    the source of the data file; not closed by this method
+     * @param tasks the list the decoded tasks are appended to
+     * @return the number of lines that were skipped as invalid
+     * @throws IOException if reading from the source fails
+     */
+    public int read(Reader in, List < Task > tasks) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int lineNumber = 0;
+        skipped = 0;
+        isChecksummed = false;
+        damaged.clear();
+        line.setLength(0);
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            int from = 0;
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    line.append(buffer, from, i - from);
+                    handleLine(++lineNumber, tasks);
+                    from = i + 1;
+                }
+            }
+            line.append(buffer, from, n - from);
+        }
+        if (line.length() > 0) {
+            handleLine(++lineNumber, tasks);
+        }
+        return skipped;
+    }
+
+    private void handleLine(int lineNumber, List < Task > tasks) {
+        int len = line.length();
+        if (len > 0 && line.charAt(len - 1) == '\r') {
+            line.setLength(--len);
+        }
+        if (lineNumber == 1 && CHECKSUM_HEADER.contentEquals(line)) {
+            isChecksummed = true;
+        } else if (len > 0) {
+            try {
+                if (RecordChecksum.hasSuffix(line)) {
+                    if (!checksum.matches(line)) throw new IllegalArgumentException("checksum mismatch");
+                    line.getChars(len - suffix.length, len, suffix, 0);
+                    line.setLength(len - suffix.length);
+                } else if (isChecksummed) {
+                    throw new IllegalArgumentException("missing checksum");
+                }
+                tasks.add(parse(line));
+            } catch (Exception e) {
+                skipped++;
+                if (line.length() < len) line.append(suffix);
+                damaged.add(line.toString());
+                System.out.println("Warning: Skipping invalid task entry at line " + lineNumber + " ("
+                        + e.getMessage() + "): " + line);
+            }
+        }
+        line.setLength(0);
+    }
+
+    /**
+     * Return the lines skipped by the last {@link #read(Reader, List)}, exactly as they
+     * appeared in the file, so they can be kept somewhere instead of being lost.
+     *
+     * @return the skipped lines, in file order
+     */
+    public List < String > damagedRecords() {
+        return damaged;
+    }
+
+    /**
+     * Decode a single "T | 0 | desc" style record.
+     *
+     * @param text the record, without the trailing newline
+     * @return the decoded task
+     * @throws IllegalArgumentException if the record is malformed
+     */
+    public Task parse(CharSequence text) {
+        split(text);
+        if (fieldCount < 3 || ends[0] - starts[0] != 1 || ends[1] - starts[1] != 1) {
+            throw new IllegalArgumentException("expected '<type> | <done> | <description>'");
+        }
+        char done = text.charAt(starts[1]);
+        if (done != '0' && done != '1') {
+            throw new IllegalArgumentException("done flag must be 0 or 1");
+        }
+        Task task;
+        switch (text.charAt(starts[0])) {
+        case 'T':
+            requireFields(3);
+            task = new Todo(text(text, 2));
+            break;
+        case 'D':
+            requireFields(4);
+            task = new Deadline(text(text, 2), date(text, 3));
+            break;
+        case 'E':
+            requireFields(5);
+            task = new Event(text(text, 2), text(text, 3), text(text, 4));
+            break;
+        default:
+            throw new IllegalArgumentException("unknown task type '" + text.charAt(starts[0]) + "'");
+        }
+        if (done == '1') task.markAsDone();
+        return task;
+    }
+
+    private void requireFields(int count) {
+        if (fieldCount != count) {
+            throw new IllegalArgumentException("expected " + count + " fields but found " + fieldCount);
+        }
+    }
+
+    /** Record the bounds of each " | "-separated field, skipping over escaped characters. */
+    private void split(CharSequence text) {
+        int len = text.length();
+        fieldCount = 0;
+        int start = 0;
+        int i = 0;
+        while (i < len) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < len && (text.charAt(i + 1) == '|' || text.charAt(i + 1) == '\\')) {
+                i += 2;
+            } else if (c == ' ' && i + 2 < len && text.charAt(i + 1) == '|' && text.charAt(i + 2) == ' ') {
+                addField(start, i);
+                i += 3;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        addField(start, len);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == MAX_FIELDS) {
+            throw new IllegalArgumentException("too many fields");
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /** Return field i as a String, shared through the dictionary if there is one. */
+    private String text(CharSequence text, int i) {
+        String value = field(text, i);
+        return strings == null ? value : strings.intern(value);
+    }
+
+    /** Materialise field i as a String, undoing any backslash escapes. */
+    private String field(CharSequence text, int i) {
+        int start = starts[i];
+        int end = ends[i];
+        int esc = -1;
+        for (int j = start; j < end; j++) {
+            if (text.charAt(j) == '\\') {
+                esc = j;
+                break;
+            }
+        }
+        if (esc < 0) {
+            return text.subSequence(start, end).toString();
+        }
+        field.setLength(0);
+        field.append(text, start, esc);
+        for (int j = esc; j < end; j++) {
+            char c = text.charAt(j);
+            if (c == '\\' && j + 1 < end && (text.charAt(j + 1) == '|' || text.charAt(j + 1) == '\\')) {
+                c = text.charAt(++j);
+            }
+            field.append(c);
+        }
+        return field.toString();
+    }
+
+    /** Parse a yyyy-MM-dd field straight from the line, falling back to LocalDate.parse. */
+    private LocalDate date(CharSequence text, int i) {
+        int s = starts[i];
+        if (ends[i] - s == 10 && text.charAt(s + 4) == '-' && text.charAt(s + 7) == '-') {
+            int year = digits(text, s, 4);
+            int month = digits(text, s + 5, 2);
+            int day = digits(text, s + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(text.subSequence(s, ends[i]));
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int j = start; j < start + count; j++) {
+            char c = text.charAt(j);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,426 @@
+package exactly;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Append-only log of task mutations kept next to the snapshot data file.
+ *
+ * Each mutating command appends one short record, so persisting a change no longer
+ * depends on the size of the task list. The first line of the log names the checksum
+ * of the snapshot it applies to; a log left behind by an interrupted compaction no
+ * longer matches the new snapshot and is discarded instead of being replayed twice.
+ *
+ * Compaction can run in the background: {@link #seal(long)} moves the current log
+ * aside as "log.old" and starts a fresh log whose header says it follows the sealed
+ * one, so commands keep appending while the snapshot is written. On load the two
+ * headers tell whether the snapshot already includes the sealed records.
+ *
+ * Records name list positions, so once one fails to apply every later one would hit
+ * the wrong task. Replay therefore stops at the first invalid record, moves it and all
+ * that follow to "log.quarantine", and rewrites the log with only the records that
+ * applied, so new records are never appended behind a damaged one.
+ *
+ * Every line ends with a CRC32C (see {@link RecordChecksum}) and is forced to disk before
+ * {@link #append(String, long)} returns, through one channel that stays open. A record
+ * torn by a crash, e.g. "DELETE | 12" cut to "DELETE | 1", fails its checksum instead of
+ * deleting the wrong task. Logs whose header has no checksum were written before this
+ * and load unchecked.
+ */
+class TaskJournal {
+    static final String ADD = "ADD";
+    static final String MARK = "MARK";
+    static final String UNMARK = "UNMARK";
+    static final String DELETE = "DELETE";
+    // Bulk records carry zero-based ranges such as "0-499,600", see formatRanges
+    static final String BULK_MARK = "BULK_MARK";
+    static final String BULK_UNMARK = "BULK_UNMARK";
+    static final String BULK_DELETE = "BULK_DELETE";
+    private static final String HEADER = "SNAPSHOT | ";
+    private static final String FOLLOWS_HEADER = "FOLLOWS | ";
+
+    private final File logFile;
+    private final File sealedFile;
+    private final File quarantineFile;
+    private final RecordChecksum checksum = new RecordChecksum();
+    // Open on the log while records are being appended; closed before the file is moved or deleted
+    private FileChannel channel;
+    private int recordCount;
+    private int sealedCount;
+    private boolean isSealed;
+
+    /**
+     * Create a journal backed by the given log file.
+     *
+     * @param logPath path to the append-only log
+     */
+    public TaskJournal(String logPath) {
+        assert logPath != null && !logPath.isEmpty(): "Log path must not be null or empty";
+        this.logFile = new File(logPath);
+        this.sealedFile = new File(logPath + ".old");
+        this.quarantineFile = new File(logPath + ".quarantine");
+    }
+
+    /**
+     * Report how many records have been appended since the last snapshot or seal.
+     *
+     * @return the number of journal records
+     */
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    /**
+     * Report whether a sealed log is waiting for its compaction to finish.
+     *
+     * @return true between {@link #seal(long)} and {@link #finishSeal()} or {@link #abortSeal()}
+     */
+    public synchronized boolean isSealed() {
+        return isSealed;
+    }
+
+    /**
+     * Apply every record that the snapshot does not already include.
+     *
+     * @param tasks            the tasks loaded from the snapshot, modified in place
+     * @param snapshotChecksum checksum of the snapshot the tasks were loaded from
+     */
+    public synchronized void replay(List < Task > tasks, long snapshotChecksum) {
+        closeChannel();
+        recordCount = 0;
+        isSealed = false;
+        String header = readHeader(logFile);
+        if (header == null) {
+            sealedFile.delete();
+            return;
+        }
+        List < String > applied = new ArrayList < > ();
+        List < String > rejected = new ArrayList < > ();
+        boolean isRead = true;
+        if (header.startsWith(FOLLOWS_HEADER)) {
+            // A background compaction started; the sealed records count only if it never finished
+            if (sealedFile.exists() && header.equals(FOLLOWS_HEADER + snapshotChecksum)) {
+                isRead = replayRecords(sealedFile, tasks, applied, rejected);
+            }
+        } else if (!header.equals(HEADER + snapshotChecksum)) {
+            System.out.println("Warning: Discarding journal that does not match the data file.");
+            logFile.delete();
+            sealedFile.delete();
+            return;
+        }
+        isRead &= replayRecords(logFile, tasks, applied, rejected);
+        recordCount = applied.size();
+        if (!isRead || !rejected.isEmpty() && !quarantine(rejected)) {
+            // Leave the logs as they are rather than drop records that are kept nowhere else
+            return;
+        }
+        // One log of exactly the applied records, so a later load replays the same ones
+        try {
+            rewrite(applied, snapshotChecksum);
+            sealedFile.delete();
+        } catch (IOException e) {
+            System.out.println("Error saving tasks: " + e.getMessage());
+        }
+    }
+
+    /** Return the header of a log without its checksum, or null if there is no log. */
+    private String readHeader(File file) {
+        if (!file.exists()) return null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            // A damaged header keeps its suffix, so it matches no snapshot and the log is discarded
+            if (header != null && RecordChecksum.hasSuffix(header) && checksum.matches(header)) {
+                header = header.substring(0, header.length() - RecordChecksum.SUFFIX_LENGTH);
+            }
+            return header;
+        } catch (Exception e) {
+            System.out.println("Error loading tasks: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Apply the records of one log file in order. Once a record fails, it and every
+     * record after it, in this file or a later one, go to the rejected list instead.
+     *
+     * @return false if the file could not be read to the end
+     */
+    private boolean replayRecords(File file, List < Task > tasks, List < String > applied, List < String > rejected) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            boolean isChecked = header != null && RecordChecksum.hasSuffix(header);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!rejected.isEmpty()) {
+                    rejected.add(line);
+                    continue;
+                }
+                try {
+                    String record = line;
+                    if (RecordChecksum.hasSuffix(line)) {
+                        if (!checksum.matches(line)) throw new IllegalArgumentException("checksum mismatch");
+                        record = line.substring(0, line.length() - RecordChecksum.SUFFIX_LENGTH);
+                    } else if (isChecked) {
+                        throw new IllegalArgumentException("missing checksum");
+                    }
+                    apply(record, tasks);
+                    applied.add(record);
+                } catch (Exception e) {
+                    System.out.println("Warning: Stopping journal replay at invalid entry ("
+                            + e.getMessage() + "): " + line);
+                    rejected.add(line);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Error loading tasks: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append records that could not be replayed to the quarantine file, so they are not lost.
+     *
+     * @return true if they were written
+     */
+    private boolean quarantine(List < String > records) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# ").append(LocalDateTime.now()).append(": ").append(records.size())
+                .append(" journal records from the first invalid one on\n");
+        for (String record: records) {
+            sb.append(record).append("\n");
+        }
+        try {
+            write(quarantineFile, sb.toString(), true);
+            System.out.println("Warning: Moved " + records.size() + " journal records to " + quarantineFile + ".");
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error quarantining journal records: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Replace the log with the given records on top of the given snapshot, or delete it if there are none. */
+    private void rewrite(List < String > records, long snapshotChecksum) throws IOException {
+        if (records.isEmpty()) {
+            logFile.delete();
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(checked(HEADER + snapshotChecksum));
+        for (String record: records) {
+            sb.append(checked(record));
+        }
+        File temp = new File(logFile.getPath() + ".tmp");
+        write(temp, sb.toString(), false);
+        Storage.moveDurably(temp.toPath(), logFile.toPath());
+    }
+
+    /** Return a record with its checksum suffix and the trailing newline. */
+    private String checked(String record) {
+        StringBuilder sb = new StringBuilder(record.length() + RecordChecksum.SUFFIX_LENGTH + 1);
+        sb.append(record);
+        checksum.append(sb);
+        return sb.append('\n').toString();
+    }
+
+    private void apply(String line, List < Task > tasks) {
+        int sep = line.indexOf(" | ");
+        if (sep < 0) {
+            throw new IllegalArgumentException("Missing delimiter: " + line);
+        }
+        String op = line.substring(0, sep);
+        String arg = line.substring(sep + 3);
+        switch (op) {
+        case ADD:
+            tasks.add(Storage.decode(arg));
+            break;
+        case MARK:
+            tasks.get(Integer.parseInt(arg)).markAsDone();
+            break;
+        case UNMARK:
+            tasks.get(Integer.parseInt(arg)).unmark();
+            break;
+        case DELETE:
+            tasks.remove(Integer.parseInt(arg));
+            break;
+        case BULK_MARK:
+        case BULK_UNMARK:
+            BitSet marked = parseRanges(arg);
+            // Check the whole range first, so a bad record changes nothing
+            if (marked.length() > tasks.size()) {
+                throw new IndexOutOfBoundsException("Range past the end of the list: " + arg);
+            }
+            for (int i = marked.nextSetBit(0); i >= 0; i = marked.nextSetBit(i + 1)) {
+                if (op.equals(BULK_MARK)) tasks.get(i).markAsDone(); else tasks.get(i).unmark();
+            }
+            break;
+        case BULK_DELETE:
+            BitSet removed = parseRanges(arg);
+            if (removed.length() > tasks.size()) {
+                throw new IndexOutOfBoundsException("Range past the end of the list: " + arg);
+            }
+            TaskList.compact(tasks, removed);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown journal record: " + op);
+        }
+    }
+
+    /**
+     * Format zero-based positions as comma-separated ranges, e.g. "0-499,600".
+     *
+     * @param indices the positions to format
+     * @return the ranges, in ascending order
+     */
+    static String formatRanges(BitSet indices) {
+        StringBuilder sb = new StringBuilder();
+        for (int from = indices.nextSetBit(0); from >= 0; from = indices.nextSetBit(from + 1)) {
+            int to = indices.nextClearBit(from) - 1;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(from);
+            if (to > from) sb.append('-').append(to);
+            from = to;
+        }
+        return sb.toString();
+    }
+
+    static BitSet parseRanges(String ranges) {
+        BitSet indices = new BitSet();
+        for (String range: ranges.split(",")) {
+            int dash = range.indexOf('-');
+            int from = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+            int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1));
+            indices.set(from, to + 1);
+        }
+        return indices;
+    }
+
+    /**
+     * Append one record to the log, starting a new log if there is none yet.
+     *
+     * @param record           the record text, without the trailing newline
+     * @param snapshotChecksum checksum of the snapshot the log applies to
+     * @throws Exception if the log cannot be written
+     */
+    public synchronized void append(String record, long snapshotChecksum) throws Exception {
+        if (channel == null) {
+            if (!logFile.exists()) {
+                write(logFile, checked(HEADER + snapshotChecksum), false);
+                Storage.forceDirectory(logFile.toPath());
+            }
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(checked(record).getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        recordCount++;
+    }
+
+    /** Write text to a file and force it to disk. */
+    private static void write(File file, String text, boolean isAppend) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file, isAppend)) {
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            w.write(text);
+            w.flush();
+            out.getChannel().force(false);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error saving tasks: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Close the log. A later {@link #append(String, long)} opens it again.
+     */
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    /**
+     * Move the current log aside so a snapshot can be written while new records
+     * keep going to a fresh log.
+     *
+     * @param snapshotChecksum checksum of the snapshot the current log applies to
+     * @throws Exception if the log cannot be moved
+     */
+    public synchronized void seal(long snapshotChecksum) throws Exception {
+        assert !isSealed: "A sealed log is already being compacted";
+        closeChannel();
+        Files.move(logFile.toPath(), sealedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        write(logFile, checked(FOLLOWS_HEADER + snapshotChecksum), false);
+        Storage.forceDirectory(logFile.toPath());
+        sealedCount = recordCount;
+        recordCount = 0;
+        isSealed = true;
+    }
+
+    /**
+     * Drop the sealed log once a snapshot including its records is on disk.
+     */
+    public synchronized void finishSeal() {
+        sealedFile.delete();
+        isSealed = false;
+    }
+
+    /**
+     * Undo {@link #seal(long)} after the snapshot could not be written, by moving the
+     * records logged since then back behind the sealed ones.
+     */
+    public synchronized void abortSeal() {
+        closeChannel();
+        try {
+            List < String > lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+            StringBuilder tail = new StringBuilder();
+            for (String line: lines.subList(1, lines.size())) {
+                tail.append(line).append("\n");
+            }
+            write(sealedFile, tail.toString(), true);
+            Storage.moveDurably(sealedFile.toPath(), logFile.toPath());
+            recordCount += sealedCount;
+        } catch (Exception e) {
+            System.out.println("Error saving tasks: " + e.getMessage());
+        }
+        isSealed = false;
+    }
+
+    /**
+     * Drop all records after a new snapshot has been written.
+     */
+    public synchronized void reset() {
+        closeChannel();
+        logFile.delete();
+        sealedFile.delete();
+        recordCount = 0;
+        isSealed = false;
+    }
+}
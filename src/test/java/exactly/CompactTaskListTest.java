@@ -0,0 +1,141 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CompactTaskListTest {
+
+    private static List < Task > sampleTasks() {
+        return List.of(
+                new Todo("read book"),
+                new Deadline("return book", "2025-05-02"),
+                new Event("standup", "2025-05-01 09:00", "09:15"),
+                new Todo("read book again"),
+                new Deadline("pay rent", "2025-05-01"),
+                new Event("party", "2025-04-30 10pm", "2am"),
+                new Event("lunch", "Mon 12pm", "1pm"),
+                new Event("review", "2025-05-01 0900", "1000"));
+    }
+
+    @Test
+    public void testQueriesMatchThePlainList() {
+        TaskList plain = new TaskList();
+        CompactTaskList compact = new CompactTaskList();
+        for (Task t: sampleTasks()) {
+            plain.add(t);
+            compact.add(t);
+        }
+        plain.markAsDone(1);
+        compact.markAsDone(1);
+
+        assertEquals(plain.listTasks(), compact.listTasks());
+        assertEquals(plain.find("book").toString(), compact.find("book").toString());
+        assertEquals(plain.find("a").toString(), compact.find("a").toString());
+        LocalDate day = LocalDate.of(2025, 5, 1);
+        assertEquals(plain.dueBetween(day, day.plusDays(1)).toString(),
+                compact.dueBetween(day, day.plusDays(1)).toString());
+        LocalDateTime from = day.atStartOfDay();
+        assertEquals(plain.eventsBetween(from, from.plusDays(1)).toString(),
+                compact.eventsBetween(from, from.plusDays(1)).toString());
+        assertEquals(plain.conflicts((Event) plain.get(7)).toString(),
+                compact.conflicts((Event) compact.get(7)).toString());
+        assertEquals(plain.doneTasks(), compact.doneTasks());
+    }
+
+    @Test
+    public void testViewsAreCopiesAndDuplicatesAreFound() {
+        CompactTaskList list = new CompactTaskList(sampleTasks());
+        list.get(0).markAsDone();
+        assertFalse(list.get(0).isDone, "Changing a view must not change the list");
+        assertTrue(list.markAsDone(0));
+        assertTrue(list.get(0).isDone);
+
+        assertTrue(list.contains(new Deadline("pay rent", "2025-05-01")));
+        assertFalse(list.contains(new Deadline("pay rent", "2025-05-02")));
+        assertTrue(list.contains(new Event("lunch", "Mon 12pm", "1pm")));
+        assertFalse(list.contains(new Todo("write book")));
+    }
+
+    @Test
+    public void testRemovalsShiftRowsAndReleaseStrings() {
+        CompactTaskList list = new CompactTaskList(sampleTasks());
+        list.markAsDone(4);
+        BitSet selected = new BitSet();
+        selected.set(0);
+        selected.set(2, 4);
+        List < Task > removed = list.removeAll(selected);
+
+        assertEquals(3, removed.size());
+        assertEquals(5, list.size());
+        assertEquals("[D][ ] return book (by: May 02 2025)", list.get(0).toString());
+        assertTrue(list.get(1).isDone, "Done state moves with its task");
+        assertFalse(list.contains(new Todo("read book")));
+        assertTrue(list.find("read").isEmpty());
+        assertEquals("[E][ ] review (from: 2025-05-01 0900 to: 1000)", list.remove(4).toString());
+        assertTrue(list.conflicts((Event) list.get(2)).isEmpty());
+    }
+
+    @Test
+    public void testIndexesStayInStepWithThePlainList() {
+        TaskList plain = new TaskList();
+        CompactTaskList compact = new CompactTaskList();
+        Random random = new Random(3);
+        String[] words = {"read", "book", "rent", "club", "meeting"};
+        for (int step = 0; step < 2000; step++) {
+            int n = random.nextInt(50);
+            String description = words[n % words.length] + " " + n;
+            LocalDate day = LocalDate.of(2025, 5, 1).plusDays(n % 7);
+            Task task;
+            switch (random.nextInt(4)) {
+            case 0:
+                task = new Todo(description);
+                break;
+            case 1:
+                task = new Deadline(description, day.toString());
+                break;
+            case 2:
+                task = new Event(description, day + " " + (8 + n % 10) + ":00", (9 + n % 12) + ":30");
+                break;
+            default:
+                task = null;
+            }
+            if (task != null && !plain.contains(task)) {
+                assertFalse(compact.contains(task), "Only a duplicate may be found: " + task);
+                plain.add(task);
+                compact.add(task);
+            } else if (task != null) {
+                assertTrue(compact.contains(task), "Missed a duplicate: " + task);
+            } else if (plain.size() > 0) {
+                BitSet selected = new BitSet();
+                selected.set(random.nextInt(plain.size()));
+                if (random.nextBoolean()) selected.set(random.nextInt(plain.size()));
+                plain.removeAll(selected);
+                compact.removeAll(selected);
+            }
+        }
+        assertEquals(plain.listTasks(), compact.listTasks());
+        for (String word: words) {
+            assertEquals(plain.find(word).toString(), compact.find(word).toString());
+            assertEquals(plain.find(word + " 1").toString(), compact.find(word + " 1").toString());
+        }
+        LocalDate day = LocalDate.of(2025, 5, 1);
+        for (int d = 0; d < 7; d++) {
+            assertEquals(plain.dueBetween(day, day.plusDays(d)).toString(),
+                    compact.dueBetween(day, day.plusDays(d)).toString());
+            LocalDateTime from = day.plusDays(d).atTime(10, 0);
+            assertEquals(plain.eventsBetween(from, from.plusHours(3)).toString(),
+                    compact.eventsBetween(from, from.plusHours(3)).toString());
+        }
+        assertEquals(plain.dueBetween(LocalDate.MIN, LocalDate.MAX).toString(),
+                compact.dueBetween(LocalDate.MIN, LocalDate.MAX).toString());
+    }
+}
@@ -0,0 +1,136 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ConcurrentTaskListTest {
+
+    @Test
+    public void testReadersSeeConsistentSnapshotsWhileWriting() throws Exception {
+        ConcurrentTaskList list = new ConcurrentTaskList();
+        AtomicBoolean isWriting = new AtomicBoolean(true);
+        List < Callable < Integer > > jobs = new ArrayList < > ();
+        jobs.add(() -> {
+            for (int i = 0; i < 2000; i++) {
+                list.add(new Todo("task " + i));
+                // Flip an earlier task, so readers race with in-place changes too
+                if (!list.markAsDone(i / 2)) list.unmark(i / 2);
+                if (i % 10 == 9) list.remove(list.size() - 1);
+            }
+            isWriting.set(false);
+            return 0;
+        });
+        for (int r = 0; r < 4; r++) {
+            jobs.add(() -> {
+                int reads = 0;
+                while (isWriting.get() || reads == 0) {
+                    ConcurrentTaskList.Snapshot s = list.snapshot();
+                    String[] lines = s.listTasks().split("\n");
+                    int expected = s.size() == 0 ? 1 : s.size() + 1;
+                    assertEquals(expected, lines.length);
+                    for (int i = 1; i < lines.length; i++) {
+                        assertTrue(lines[i].startsWith(" " + i + ". [T]"), lines[i]);
+                    }
+                    if (s.size() > 0) {
+                        int pages = s.pageCount(7);
+                        String last = s.listPage(pages, 7);
+                        assertTrue(last.contains(" of " + s.size() + " in your list"), last);
+                    }
+                    reads++;
+                }
+                return reads;
+            });
+        }
+        runAll(jobs);
+
+        assertEquals(1800, list.size());
+        assertEquals(list.size() + 1, list.listTasks().split("\n").length);
+    }
+
+    @Test
+    public void testConcurrentWritersLoseNoUpdates() throws Exception {
+        ConcurrentTaskList list = new ConcurrentTaskList();
+        List < Callable < Integer > > jobs = new ArrayList < > ();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            jobs.add(() -> {
+                for (int i = 0; i < 500; i++) {
+                    list.add(new Todo("writer " + writer + " task " + i));
+                    list.listTasks();
+                }
+                return 0;
+            });
+        }
+        runAll(jobs);
+
+        assertEquals(2000, list.size());
+        assertEquals(2000, list.getTasks().size());
+        assertEquals(500, list.find("writer 3 ").size());
+        assertTrue(list.contains(new Todo("writer 0 task 499")));
+    }
+
+    @Test
+    public void testCommandsFromManyThreadsMatchTheJournal(@TempDir Path dir) throws Exception {
+        String path = dir.resolve("tasks.txt").toString();
+        Exactly exactly = new Exactly(path, true);
+        AtomicInteger size = new AtomicInteger();
+        List < Callable < Integer > > jobs = new ArrayList < > ();
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            jobs.add(() -> {
+                for (int i = 0; i < 300; i++) {
+                    String[] commands = {"todo writer " + writer + " task " + i, "mark 1", "unmark 2", "list",
+                        i % 3 == 0 ? "delete 1" : "find task", "list 2 --page-size 5", "todo shared task " + i};
+                    for (String command: commands) {
+                        String response = exactly.getResponse(command);
+                        // A command that checked a task number must still find that task when it acts on it
+                        assertFalse(response.contains(" Error:"), command + " gave " + response);
+                        if (response.contains(" I've added")) size.incrementAndGet();
+                        if (response.contains(" I've removed")) size.decrementAndGet();
+                    }
+                }
+                return 0;
+            });
+        }
+        runAll(jobs);
+        String listing = exactly.getResponse("list");
+        exactly.close();
+
+        // Every change reached the journal in the order it was made to the list
+        Exactly reopened = new Exactly(path, true);
+        assertEquals(listing, reopened.getResponse("list"));
+        reopened.close();
+        // Divider, header and divider around one line per task
+        assertEquals(size.get() + 3, listing.split("\n").length);
+    }
+
+    private static void runAll(List < Callable < Integer > > jobs) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs.size());
+        try {
+            List < Future < Integer > > results = new ArrayList < > ();
+            for (Callable < Integer > job: jobs) {
+                results.add(pool.submit(job));
+            }
+            for (Future < Integer > f: results) {
+                // Rethrows any assertion that failed on a worker thread
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
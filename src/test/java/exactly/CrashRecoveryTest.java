@@ -0,0 +1,295 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Fault injection for the data file: writes cut off at random offsets and bytes damaged
+ * at random positions must never lose a record that is still intact.
+ */
+public class CrashRecoveryTest {
+    private static final Storage.Format[] SNAPSHOT_FORMATS = {Storage.Format.TEXT, Storage.Format.BINARY};
+
+    @TempDir
+    Path tempDir;
+
+    private static List<Task> sampleTasks() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            switch (i % 4) {
+            case 0:
+                tasks.add(new Todo("read book " + i));
+                break;
+            case 1:
+                tasks.add(new Deadline("return | book", "2019-12-02"));
+                break;
+            case 2:
+                tasks.add(new Event("project meeting ünïcode", "Mon 2pm", "4pm"));
+                break;
+            default:
+                tasks.add(new Event("conference", "1/5/1969 9am", "3/5/1969"));
+            }
+            if (i % 3 == 0) tasks.get(i).markAsDone();
+        }
+        return tasks;
+    }
+
+    /** Assert that loaded holds some of the expected tasks, in order, and nothing else. */
+    private static void assertSubsequence(List<Task> expected, List<Task> loaded) {
+        int j = 0;
+        for (Task t: loaded) {
+            while (j < expected.size() && !(expected.get(j).equals(t) && expected.get(j).isDone == t.isDone)) {
+                j++;
+            }
+            assertTrue(j < expected.size(), "Loaded a task that was never saved: " + t);
+            j++;
+        }
+    }
+
+    /** Render tasks so that done flags are compared too. */
+    private static List<String> render(List<Task> tasks) {
+        return tasks.stream().map(Task::toString).collect(Collectors.toList());
+    }
+
+    private byte[] savedBytes(Storage.Format format, List<Task> tasks) throws IOException {
+        Path path = tempDir.resolve("full-" + format);
+        new Storage(path.toString(), format, false).save(tasks);
+        return Files.readAllBytes(path);
+    }
+
+    @Test
+    public void testWriteKilledAtRandomOffsetKeepsEveryCompleteRecord() throws IOException {
+        List<Task> tasks = sampleTasks();
+        Random random = new Random(42);
+        for (Storage.Format format: SNAPSHOT_FORMATS) {
+            byte[] full = savedBytes(format, tasks);
+            for (int trial = 0; trial < 100; trial++) {
+                int offset = random.nextInt(full.length);
+                Path path = tempDir.resolve(format + "-cut-" + trial);
+                Files.write(path, Arrays.copyOf(full, offset));
+
+                List<Task> loaded = new Storage(path.toString(), format, false).load();
+                assertEquals(tasks.subList(0, loaded.size()), loaded, format + " cut at " + offset);
+                if (format == Storage.Format.TEXT) {
+                    // Every line ended before the cut is complete; only the torn one may be lost
+                    int lines = 0;
+                    for (int i = 0; i < offset; i++) {
+                        if (full[i] == '\n') lines++;
+                    }
+                    assertTrue(loaded.size() >= lines - 1, "Lost a complete line when cut at " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testJournalCutAtRandomOffsetReplaysOnlyWholeRecords() throws IOException {
+        Path dir = tempDir.resolve("journal");
+        Files.createDirectories(dir);
+        String path = dir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        List<Task> tasks = storage.load();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new Todo("task " + i));
+        }
+        storage.save(tasks);
+
+        // The expected list after each journal record
+        List<List<String>> states = new ArrayList<>();
+        states.add(render(tasks));
+        for (int i = 0; i < 30; i++) {
+            int index = i * 7 % tasks.size();
+            switch (i % 3) {
+            case 0:
+                Todo todo = new Todo("added " + i);
+                tasks.add(todo);
+                storage.logAdd(todo);
+                break;
+            case 1:
+                tasks.get(index).markAsDone();
+                storage.logMark(index, true);
+                break;
+            default:
+                tasks.remove(index);
+                storage.logDelete(index);
+            }
+            states.add(render(tasks));
+        }
+        storage.close();
+        byte[] snapshot = Files.readAllBytes(Path.of(path));
+        byte[] log = Files.readAllBytes(Path.of(path + ".log"));
+
+        Random random = new Random(11);
+        for (int trial = 0; trial < 100; trial++) {
+            int offset = random.nextInt(log.length + 1);
+            Path trialDir = tempDir.resolve("journal-cut-" + trial);
+            Files.createDirectories(trialDir);
+            String data = trialDir.resolve("tasks.txt").toString();
+            Files.write(Path.of(data), snapshot);
+            Files.write(Path.of(data + ".log"), Arrays.copyOf(log, offset));
+
+            // Every line ended before the cut is whole; the torn one applies only if it lost just its newline
+            int lines = 0;
+            for (int i = 0; i < offset; i++) {
+                if (log[i] == '\n') lines++;
+            }
+            int whole = Math.max(0, lines - 1);
+            Storage reopened = new Storage(data, true);
+            List<Task> loaded = reopened.load();
+            List<String> rendered = render(loaded);
+            assertTrue(rendered.equals(states.get(whole))
+                    || whole + 1 < states.size() && rendered.equals(states.get(whole + 1)),
+                    "Journal cut at " + offset + " replayed " + rendered);
+
+            // A record logged after recovery must not be lost behind the torn one
+            Todo late = new Todo("late task");
+            loaded.add(late);
+            reopened.logAdd(late);
+            reopened.close();
+            assertEquals(render(loaded), render(new Storage(data, true).load()));
+        }
+    }
+
+    @Test
+    public void testCrashBeforeRenameLeavesPreviousSnapshot() throws IOException {
+        List<Task> before = sampleTasks().subList(0, 10);
+        List<Task> after = sampleTasks();
+        Random random = new Random(7);
+        for (Storage.Format format: SNAPSHOT_FORMATS) {
+            byte[] next = savedBytes(format, after);
+            Path path = tempDir.resolve(format + "-rename");
+            new Storage(path.toString(), format, false).save(before);
+
+            // The process died while the new snapshot was still going to the temporary file
+            Path temp = Path.of(path + ".tmp");
+            Files.write(temp, Arrays.copyOf(next, random.nextInt(next.length)));
+            assertEquals(before, new Storage(path.toString(), format, false).load());
+
+            new Storage(path.toString(), format, false).save(after);
+            assertEquals(after, new Storage(path.toString(), format, false).load());
+            assertFalse(Files.exists(temp));
+        }
+    }
+
+    @Test
+    public void testFailedSaveRemovesItsTemporaryFile() throws IOException {
+        for (Storage.Format format: SNAPSHOT_FORMATS) {
+            // A non-empty directory in the way makes the final rename fail
+            Path path = tempDir.resolve(format + "-blocked");
+            Files.createDirectories(path);
+            Files.writeString(path.resolve("keep"), "x");
+
+            new Storage(path.toString(), format, false).save(sampleTasks());
+            assertFalse(Files.exists(Path.of(path + ".tmp")), "The partial snapshot should be deleted");
+            assertTrue(Files.isDirectory(path));
+        }
+    }
+
+    @Test
+    public void testDamagedRecordsAreQuarantinedAndTheRestSalvaged() throws IOException {
+        List<Task> tasks = sampleTasks();
+        Random random = new Random(2019);
+        for (Storage.Format format: SNAPSHOT_FORMATS) {
+            byte[] full = savedBytes(format, tasks);
+            for (int trial = 0; trial < 50; trial++) {
+                // Damage one byte past the header line or the string table
+                byte[] damaged = full.clone();
+                int offset;
+                do {
+                    offset = full.length / 2 + random.nextInt(full.length / 2);
+                } while (format == Storage.Format.TEXT && full[offset] == '\n'); // Joining two lines loses both
+                damaged[offset] ^= (byte) (1 + random.nextInt(255));
+                Path path = tempDir.resolve(format + "-flip-" + trial);
+                Files.write(path, damaged);
+
+                List<Task> loaded = new Storage(path.toString(), format, false).load();
+                assertSubsequence(tasks, loaded);
+                if (format == Storage.Format.TEXT) {
+                    assertEquals(tasks.size() - 1, loaded.size(), "Only the damaged line should be lost");
+                }
+                Path quarantine = Path.of(path + ".quarantine");
+                assertTrue(loaded.size() == tasks.size() || Files.exists(quarantine),
+                        "Lost tasks must be kept in quarantine");
+
+                // The clean snapshot written on recovery loads without damage
+                long quarantined = Files.exists(quarantine) ? Files.size(quarantine) : 0;
+                assertEquals(loaded, new Storage(path.toString(), format, false).load());
+                assertEquals(quarantined, Files.exists(quarantine) ? Files.size(quarantine) : 0);
+            }
+        }
+    }
+
+    @Test
+    public void testQuarantineKeepsTheDamagedLine() throws IOException {
+        Path path = tempDir.resolve("tasks.txt");
+        new Storage(path.toString()).save(List.of(new Todo("read book"), new Todo("return book")));
+        String text = Files.readString(path).replace("read book", "reed book");
+        Files.writeString(path, text);
+
+        List<Task> loaded = new Storage(path.toString()).load();
+        assertEquals(List.of(new Todo("return book")), loaded);
+        String quarantine = Files.readString(Path.of(path + ".quarantine"));
+        assertTrue(quarantine.contains("T | 0 | reed book | #"), quarantine);
+    }
+
+    @Test
+    public void testFilesWithoutChecksumsStillLoad() throws IOException {
+        Path path = tempDir.resolve("tasks.txt");
+        Files.writeString(path, "T | 1 | read book\nD | 0 | return book | 2019-12-02\n");
+
+        List<Task> loaded = new Storage(path.toString()).load();
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.get(0).isDone);
+        assertFalse(Files.exists(Path.of(path + ".quarantine")));
+    }
+
+    @Test
+    public void testUnreadableFileIsQuarantinedBeforeItIsReplaced() throws IOException {
+        for (Storage.Format format: new Storage.Format[] {Storage.Format.BINARY, Storage.Format.SLOTS}) {
+            Path path = tempDir.resolve("unreadable-" + format);
+            new Storage(path.toString(), format, true).save(sampleTasks());
+            byte[] damaged = Files.readAllBytes(path);
+            // A byte of the binary task count, or of the slot file's recorded end
+            int at = format == Storage.Format.BINARY ? 7 : 9;
+            damaged[at] ^= 0x7F;
+            Files.write(path, damaged);
+
+            Storage storage = new Storage(path.toString(), format, true);
+            List<Task> loaded = storage.load();
+            storage.save(List.of(new Todo("new")));
+            storage.close();
+
+            assertEquals(List.of(), loaded, format.toString());
+            String quarantine = Files.readString(Path.of(path + ".quarantine"));
+            assertTrue(quarantine.contains(BinaryTaskCodec.hex(damaged, damaged.length)), format.toString());
+            assertEquals(List.of(new Todo("new")), new Storage(path.toString(), format, false).load());
+        }
+    }
+
+    @Test
+    public void testUnreadableFileIsNotReplacedWhenItCannotBeSetAside() throws IOException {
+        Path path = tempDir.resolve("tasks.bin");
+        Files.write(path, new byte[] {'E', 'X', 'T', 'K', 9});
+        // A directory in the way makes the quarantine file impossible to write
+        Files.createDirectory(Path.of(path + ".quarantine"));
+
+        Storage storage = new Storage(path.toString(), Storage.Format.BINARY, false);
+        assertEquals(List.of(), storage.load());
+        storage.save(List.of(new Todo("new")));
+        storage.close();
+        assertTrue(Arrays.equals(new byte[] {'E', 'X', 'T', 'K', 9}, Files.readAllBytes(path)));
+    }
+}
@@ -0,0 +1,184 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExactlyServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    public void testPipelinedCommandsAnswerInOrder() throws Exception {
+        String path = tempDir.resolve("tasks.txt").toString();
+        ExactlyServer server = new ExactlyServer(path, 0, true);
+        server.start();
+        try {
+            String body = post(server, "default", "todo read book\nmark 1\nlist\n");
+            Exactly local = new Exactly(tempDir.resolve("expected.txt").toString());
+            String expected = local.getResponse("todo read book") + local.getResponse("mark 1")
+                    + local.getResponse("list");
+            local.close();
+            assertEquals(expected, body);
+        } finally {
+            server.stop();
+        }
+        assertEquals(1, new Storage(path, true).load().size());
+    }
+
+    @Test
+    public void testSessionsShareOrSeparateLists() throws Exception {
+        String path = tempDir.resolve("tasks.txt").toString();
+        ExactlyServer separate = new ExactlyServer(path, 0, false);
+        separate.start();
+        try {
+            post(separate, "alice", "todo read book");
+            assertFalse(post(separate, "bob", "list").contains("read book"));
+            assertTrue(post(separate, "alice", "list").contains("read book"));
+        } finally {
+            separate.stop();
+        }
+
+        ExactlyServer shared = new ExactlyServer(path, 0, true);
+        shared.start();
+        try {
+            post(shared, "alice", "todo return book");
+            assertTrue(post(shared, "bob", "list").contains("return book"));
+        } finally {
+            shared.stop();
+        }
+    }
+
+    @Test
+    public void testSessionNamesCannotEscapeTheDataFolder() {
+        assertEquals(ExactlyServer.DEFAULT_SESSION, ExactlyServer.sessionOf(URI.create("/command")));
+        assertEquals("alice-2", ExactlyServer.sessionOf(URI.create("/command?session=alice-2")));
+        assertNull(ExactlyServer.sessionOf(URI.create("/command?session=..%2Fsecret")));
+    }
+
+    @Test
+    public void testOnlyLocalHostsAndOriginsAreServed() throws Exception {
+        ExactlyServer server = new ExactlyServer(tempDir.resolve("tasks.txt").toString(), 0, true);
+        server.start();
+        try {
+            int port = server.getPort();
+            assertTrue(rawPost(port, "localhost:" + port, null).startsWith("HTTP/1.1 200"));
+            // A DNS name rebound to 127.0.0.1 still carries the attacker's host name
+            assertTrue(rawPost(port, "evil.example:" + port, null).startsWith("HTTP/1.1 403"));
+            assertTrue(rawPost(port, "localhost:" + port, "http://evil.example").startsWith("HTTP/1.1 403"));
+            assertTrue(rawPost(port, "127.0.0.1:" + port, "http://localhost:" + port).startsWith("HTTP/1.1 200"));
+        } finally {
+            server.stop();
+        }
+        assertEquals(2, new Storage(tempDir.resolve("tasks.txt").toString(), true).load().size());
+    }
+
+    @Test
+    public void testLargeBodiesAreRejected() throws Exception {
+        ExactlyServer server = new ExactlyServer(tempDir.resolve("tasks.txt").toString(), 0, true);
+        server.start();
+        try {
+            String commands = "todo x\n".repeat(ExactlyServer.MAX_BODY_BYTES / 7 + 1);
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getPort() + "/command"))
+                    .POST(HttpRequest.BodyPublishers.ofString(commands))
+                    .build();
+            assertEquals(413, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+            assertTrue(post(server, "default", "list").contains("empty"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSessionsAreCappedAndIdleOnesClosed() throws Exception {
+        String path = tempDir.resolve("tasks.txt").toString();
+        ExactlyServer server = new ExactlyServer(path, 0, false, 2, TimeUnit.HOURS.toNanos(1));
+        assertNotNull(server.session("alice"));
+        assertNotNull(server.session("bob"));
+        assertNull(server.session("carol"), "A third session should be refused");
+        assertNotNull(server.session("alice"), "Open sessions stay available");
+        server.stop();
+
+        ExactlyServer expiring = new ExactlyServer(path, 0, false, 2, 0);
+        ExactlyServer.Session alice = expiring.session("alice");
+        expiring.session("bob");
+        Thread.sleep(1);
+        assertNotNull(expiring.session("carol"), "Idle sessions should make room");
+        assertTrue(alice.isClosed);
+        expiring.stop();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneOpening() throws Exception {
+        ExactlyServer server = new ExactlyServer(tempDir.resolve("tasks.txt").toString(), 0, false);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<ExactlyServer.Session>> opened = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            opened.add(pool.submit(() -> server.session("alice")));
+        }
+        ExactlyServer.Session first = opened.get(0).get();
+        for (Future<ExactlyServer.Session> session: opened) {
+            assertSame(first, session.get(), "Every request should get the one session opened");
+        }
+        pool.shutdown();
+        server.stop();
+        assertTrue(first.isClosed);
+    }
+
+    @Test
+    public void testNoSessionOpensAfterStop() throws Exception {
+        ExactlyServer server = new ExactlyServer(tempDir.resolve("tasks.txt").toString(), 0, false);
+        ExactlyServer.Session alice = server.session("alice");
+        server.stop();
+        assertTrue(alice.isClosed);
+        assertNull(server.session("alice"));
+        assertNull(server.session("bob"));
+    }
+
+    /** Send "todo" requests with hand-written Host and Origin headers, which HttpClient will not set. */
+    private static String rawPost(int port, String host, String origin) throws Exception {
+        String body = "todo from " + host + " " + origin;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            String request = "POST /command HTTP/1.1\r\nHost: " + host + "\r\n"
+                    + (origin == null ? "" : "Origin: " + origin + "\r\n")
+                    + "Content-Length: " + body.length() + "\r\nConnection: close\r\n\r\n" + body;
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private String post(ExactlyServer server, String session, String commands) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getPort() + "/command?session=" + session))
+                .POST(HttpRequest.BodyPublishers.ofString(commands))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return response.body();
+    }
+}
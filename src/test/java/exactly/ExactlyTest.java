@@ -0,0 +1,206 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExactlyTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testBatchPersistsOnceAtTheEnd() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Exactly exactly = new Exactly(path, true);
+        List<String> commands = List.of("todo read book", "deadline return book /by 2019-12-02",
+                "mark 1", "delete 2", "list");
+
+        Iterator<String> responses = exactly.getResponses(commands.iterator(), 0);
+        List<String> collected = new ArrayList<>();
+        collected.add(responses.next());
+        assertFalse(new File(path).exists(), "Nothing should be written before a checkpoint");
+        while (responses.hasNext()) {
+            collected.add(responses.next());
+        }
+
+        assertEquals(commands.size(), collected.size());
+        assertTrue(collected.get(4).contains("1. [T][X] read book"));
+        assertFalse(new File(path + ".log").exists(), "Batch commands should bypass the journal");
+        List<Task> saved = new Storage(path).load();
+        assertEquals(1, saved.size());
+        assertTrue(saved.get(0).isDone);
+    }
+
+    @Test
+    public void testInteractiveCommandAfterBatchSeesBatchChanges() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Exactly exactly = new Exactly(path, true);
+        Iterator<String> responses = exactly.getResponses(List.of("todo read book").iterator(), 0);
+        responses.next();
+
+        // The batch was not drained, so its change must be saved before the journal is used
+        exactly.getResponse("todo return book");
+        exactly.close();
+
+        assertEquals(2, new Storage(path, true).load().size());
+    }
+
+    @Test
+    public void testCloseSavesAnAbandonedBatch() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Exactly exactly = new Exactly(path, true);
+        Iterator<String> responses = exactly.getResponses(
+                List.of("todo read book", "todo return book", "todo join club").iterator(), 0);
+        responses.next();
+        responses.next();
+
+        exactly.close();
+
+        assertEquals(List.of(new Todo("read book"), new Todo("return book")), new Storage(path, true).load());
+    }
+
+    @Test
+    public void testListPaging() {
+        Exactly exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+        List<String> commands = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            commands.add("todo task " + i);
+        }
+        exactly.getResponses(commands.iterator(), 0).forEachRemaining(r -> { });
+
+        String page = exactly.getResponse("list 2 --page-size 2");
+        assertTrue(page.contains("Here are tasks 3-4 of 5"));
+        assertTrue(page.contains(" 3. [T][ ] task 3"));
+        assertFalse(page.contains("task 5"));
+        assertTrue(page.contains("Type 'list 3 --page-size 2'"));
+        assertTrue(exactly.getResponse("list 4 --page-size 2").contains("only has 3 pages"));
+
+        // A bare list still shows everything unless the front end asks for paging
+        assertTrue(exactly.getResponse("list").contains(" 5. [T][ ] task 5"));
+        // Stray words are ignored, as they were before paging
+        assertEquals(exactly.getResponse("list"), exactly.getResponse("list all"));
+        assertEquals(page, exactly.getResponse("list please 2 --page-size 2"));
+        exactly.setListPageSize(2);
+        assertFalse(exactly.getResponse("list").contains("task 3"));
+        exactly.close();
+    }
+
+    @Test
+    public void testStreamedListMatchesResponse() {
+        Exactly exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+        assertEquals(exactly.getResponse("list"),
+                exactly.streamList().map(line -> line + "\n").collect(Collectors.joining()));
+        exactly.getResponse("todo read book");
+        exactly.getResponse("deadline return book /by 2019-12-02");
+        assertEquals(exactly.getResponse("list"),
+                exactly.streamList().map(line -> line + "\n").collect(Collectors.joining()));
+        exactly.close();
+    }
+
+    @Test
+    public void testBulkCommandsAreJournaledAsOneRecord() throws IOException {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Exactly exactly = new Exactly(path, true);
+        for (int i = 1; i <= 10; i++) {
+            exactly.getResponse("todo task " + i);
+        }
+        assertTrue(exactly.getResponse("mark 1-3,5").contains("marked 4 tasks as done"));
+        assertTrue(exactly.getResponse("unmark 2,9").contains("(1 of them already was not done.)"));
+        assertTrue(exactly.getResponse("delete done").contains("removed 3 tasks"));
+        assertTrue(exactly.getResponse("delete 1,6-7").contains("Now you have 4 tasks"));
+        assertTrue(exactly.getResponse("mark 2-12").contains("There is no task 12!"));
+        assertTrue(exactly.getResponse("delete done").contains("none of your tasks are done"));
+        String expected = exactly.getResponse("list");
+        exactly.close();
+        // Header, ten adds and one record per successful bulk command
+        assertEquals(15, Files.readAllLines(Path.of(path + ".log")).size());
+
+        Exactly reloaded = new Exactly(path, true);
+        assertEquals(expected, reloaded.getResponse("list"));
+        assertTrue(expected.contains(" 1. [T][ ] task 4"));
+        assertTrue(expected.contains(" 4. [T][ ] task 8"));
+        reloaded.close();
+    }
+
+    @Test
+    public void testDueCommands() {
+        Exactly exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+        exactly.getResponse("deadline submit report /by 2025-05-03");
+        exactly.getResponse("deadline return book /by 2025-05-01");
+        exactly.getResponse("todo read book");
+        exactly.getResponse("deadline pay rent /by " + LocalDate.now().plusDays(3));
+
+        String on = exactly.getResponse("due 2025-05-01");
+        assertTrue(on.contains(" 1. [D][ ] return book (by: May 01 2025)"));
+        assertFalse(on.contains("submit report"));
+
+        String before = exactly.getResponse("due before 2025-05-04");
+        assertTrue(before.indexOf("return book") < before.indexOf("submit report"), "Soonest first");
+        assertFalse(before.contains("pay rent"));
+
+        assertTrue(exactly.getResponse("due next 7d").contains("pay rent"));
+        assertTrue(exactly.getResponse("due next 2d").contains("Nothing is due in the next 2 days!"));
+        // Today plus three is the fourth day counted
+        assertTrue(exactly.getResponse("due next 3d").contains("Nothing is due in the next 3 days!"));
+        assertTrue(exactly.getResponse("due next 4d").contains("pay rent"));
+        exactly.getResponse("deadline call mum /by " + LocalDate.now());
+        assertTrue(exactly.getResponse("due next 1d").contains("call mum"));
+        assertTrue(exactly.getResponse("due someday").contains("Huh? Try: due <yyyy-MM-dd>"));
+        exactly.close();
+    }
+
+    @Test
+    public void testEventAgendaAndConflicts() {
+        Exactly exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+        exactly.getResponse("event standup /from 2025-05-01 09:00 /to 09:15");
+        exactly.getResponse("event party /from 2025-04-30 10pm /to 2am");
+        exactly.getResponse("event lunch /from Mon 12pm /to 1pm");
+        exactly.getResponse("deadline submit report /by 2025-05-01");
+
+        String added = exactly.getResponse("event review /from 2025-05-01 0900 /to 1000");
+        assertTrue(added.contains("Heads up! It overlaps with 1 other event:"));
+        assertTrue(added.contains("[E][ ] standup"));
+
+        String agenda = exactly.getResponse("on 2025-05-01");
+        assertTrue(agenda.contains(" 1. [E][ ] party"), "Runs past midnight into the day");
+        assertTrue(agenda.contains(" 2. [E][ ] standup"));
+        assertTrue(agenda.contains(" 4. [D][ ] submit report"));
+        assertFalse(agenda.contains("lunch"), "Relative days are not placed on the calendar");
+
+        assertTrue(exactly.getResponse("conflicts 5").contains(" 1. [E][ ] standup"));
+        assertTrue(exactly.getResponse("conflicts 2").contains("All clear!"));
+        assertTrue(exactly.getResponse("conflicts 3").contains("Only events with dates"));
+        exactly.close();
+    }
+
+    @Test
+    public void testBackgroundLoadRunsCommandsOnceLoaded() throws IOException {
+        Path file = tempDir.resolve("tasks.txt");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            data.append("T | 0 | task ").append(i).append("\n");
+        }
+        Files.writeString(file, data);
+
+        Exactly exactly = new Exactly(file.toString(), false, true);
+        assertTrue(exactly.getResponse("todo one more").contains("Now you have 20001 tasks"));
+        assertTrue(exactly.isLoaded());
+        exactly.close();
+        // The rewritten file starts with a checksum header line
+        assertEquals(20002, Files.readAllLines(file).size());
+    }
+}
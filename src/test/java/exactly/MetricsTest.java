@@ -0,0 +1,113 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testHistogramPercentilesStayWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v * 1000);
+        }
+        assertEquals(1000, h.count());
+        assertEquals(500_500, h.mean());
+        assertEquals(1_000_000, h.max());
+        long p50 = h.percentile(50);
+        long p99 = h.percentile(99);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.07, "p50 was " + p50);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 was " + p99);
+    }
+
+    @Test
+    public void testHistogramBucketsCoverEveryValue() {
+        for (long v: new long[] {0, 1, 15, 16, 17, 1023, 1024, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(LatencyHistogram.upperEdgeOf(bucket) >= v, "Bucket of " + v + " ends too early");
+            assertTrue(bucket == 0 || LatencyHistogram.upperEdgeOf(bucket - 1) < v,
+                    "Bucket of " + v + " starts too late");
+        }
+    }
+
+    @Test
+    public void testStatsCommandCountsCommandsAndSaves() {
+        Exactly exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+        exactly.getResponse("todo read book");
+        exactly.getResponse("list");
+        exactly.getResponse("list");
+        exactly.flush();
+
+        String stats = exactly.getResponse("stats");
+        assertTrue(stats.contains("tasks: 1"), stats);
+        assertTrue(stats.matches("(?s).*\\n    list +2 .*"), stats);
+        assertTrue(stats.matches("(?s).*\\n    todo +1 .*"), stats);
+        assertTrue(stats.matches("(?s).*\\n    save +1 .*"), stats);
+        exactly.close();
+    }
+
+    @Test
+    public void testConsoleListIsCountedLikeOtherCommands() {
+        InputStream in = System.in;
+        PrintStream out = System.out;
+        System.setIn(new ByteArrayInputStream("todo read book\nlist\nbye\n".getBytes(StandardCharsets.UTF_8)));
+        System.setOut(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+        Exactly exactly;
+        try {
+            exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+            exactly.run();
+        } finally {
+            System.setIn(in);
+            System.setOut(out);
+        }
+
+        String stats = exactly.getResponse("stats");
+        assertTrue(stats.matches("(?s).*\\n    list +1 .*"), stats);
+        assertTrue(stats.matches("(?s).*\\n    parse +4 .*"), stats);
+    }
+
+    @Test
+    public void testDisabledMetricsRecordNothing() {
+        Metrics metrics = new Metrics(false);
+        long start = metrics.start();
+        metrics.recordCommand(Command.Type.LIST, start);
+        metrics.recordSave(start, 100);
+        assertEquals(0, start);
+        assertTrue(metrics.getCounts().isEmpty());
+        assertEquals(0, metrics.getSavedBytes());
+        StringBuilder sb = new StringBuilder();
+        metrics.appendReport(sb);
+        assertTrue(sb.toString().contains("switched off"));
+    }
+
+    @Test
+    public void testMetricsArePublishedOverJmxUntilClosed() throws Exception {
+        Exactly exactly = new Exactly(tempDir.resolve("tasks.txt").toString());
+        exactly.registerMetrics("metrics-test");
+        exactly.getResponse("todo read book");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("exactly:type=Metrics,name=\"metrics-test\"");
+
+        assertEquals(1, server.getAttribute(name, "TaskCount"));
+        exactly.close();
+        assertFalse(server.isRegistered(name));
+    }
+}
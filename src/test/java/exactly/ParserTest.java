@@ -0,0 +1,69 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ParserTest {
+
+    @Test
+    public void parse_commandWord_resolvesTypeAndTrimsArgs() {
+        Command c = Parser.parse("  mark   3  ");
+        assertEquals(Command.Type.MARK, c.type);
+        assertEquals("3", c.args);
+        assertEquals(Command.Type.LIST, Parser.parse("list").type);
+        assertEquals("", Parser.parse("list").args);
+    }
+
+    @Test
+    public void parse_unknownOrPrefixWord_isUnknown() {
+        assertEquals(Command.Type.UNKNOWN, Parser.parse("blah").type);
+        assertEquals(Command.Type.UNKNOWN, Parser.parse("lists").type);
+        assertEquals(Command.Type.UNKNOWN, Parser.parse("").type);
+        assertEquals(Command.Type.UNKNOWN, Parser.parse("TODO read").type);
+    }
+
+    @Test
+    public void parse_deadline_splitsDescriptionAndBy() {
+        Command c = Parser.parse("deadline return book /by 2019-12-02");
+        assertEquals(Command.Type.DEADLINE, c.type);
+        assertEquals("return book", c.description);
+        assertEquals("2019-12-02", c.by);
+        assertFalse(c.hasRepeatedFlag);
+    }
+
+    @Test
+    public void parse_eventFlagsInAnyOrder_giveSameFields() {
+        Command inOrder = Parser.parse("event party /from 2025-06-15 18:00 /to 22:00");
+        Command swapped = Parser.parse("event party /to 22:00 /from 2025-06-15 18:00");
+        assertEquals("party", swapped.description);
+        assertEquals(inOrder.from, swapped.from);
+        assertEquals(inOrder.to, swapped.to);
+        assertEquals("22:00", swapped.to);
+    }
+
+    @Test
+    public void parse_slashInsideTextOrUnknownFlag_staysLiteral() {
+        Command c = Parser.parse("deadline read and/or write /by 1/2/2025");
+        assertEquals("read and/or write", c.description);
+        assertEquals("1/2/2025", c.by);
+        Command event = Parser.parse("event talk /by mistake /from 2pm /to 3pm");
+        assertEquals("talk /by mistake", event.description);
+    }
+
+    @Test
+    public void parse_missingOrRepeatedFlag_isReported() {
+        assertNull(Parser.parse("deadline return book").by);
+        assertNull(Parser.parse("event party /from 2pm").to);
+        assertTrue(Parser.parse("deadline a /by 2025-01-01 /by 2025-02-02").hasRepeatedFlag);
+    }
+
+    @Test
+    public void words_splitsOnAnyWhitespace() {
+        assertEquals(java.util.List.of("2", "--page-size", "10"), Parser.words(" 2 \t--page-size  10 "));
+        assertTrue(Parser.words("   ").isEmpty());
+    }
+}
@@ -0,0 +1,392 @@
+package exactly;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testJournalReplaysOnTopOfSnapshot() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        List<Task> tasks = storage.load();
+        tasks.add(new Todo("read book"));
+        storage.save(tasks);
+
+        // Mutations after the snapshot only go to the journal
+        storage.logAdd(new Deadline("return book", "2019-12-02"));
+        storage.logMark(0, true);
+        storage.logAdd(new Event("project meeting", "Mon 2pm", "4pm"));
+        storage.logDelete(1);
+
+        List<Task> loaded = new Storage(path, true).load();
+        assertEquals(2, loaded.size());
+        assertEquals("[T][X] read book", loaded.get(0).toString());
+        assertEquals("[E][ ] project meeting (from: Mon 2pm to: 4pm)", loaded.get(1).toString());
+    }
+
+    @Test
+    public void testReplayStopsAtFirstInvalidRecord() throws Exception {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        List<Task> tasks = storage.load();
+        tasks.add(new Todo("read book"));
+        tasks.add(new Todo("return book"));
+        storage.save(tasks);
+
+        // The bulk record reaches past the end; skipping it would shift the delete below
+        BitSet pastEnd = new BitSet();
+        pastEnd.set(0);
+        pastEnd.set(7);
+        storage.logMarkAll(pastEnd, true);
+        storage.logDelete(0);
+        storage.logAdd(new Todo("late task"));
+
+        List<Task> loaded = new Storage(path, true).load();
+        assertEquals(List.of(new Todo("read book"), new Todo("return book")), loaded);
+        assertFalse(loaded.get(0).isDone, "A bad bulk record must not apply in part");
+        String quarantine = Files.readString(Path.of(path + ".log.quarantine"));
+        assertTrue(quarantine.contains("DELETE | 0") && quarantine.contains("late task"), quarantine);
+
+        // The log now holds only what applied, so new records are not stuck behind the bad one
+        Storage reopened = new Storage(path, true);
+        reopened.load();
+        reopened.logAdd(new Todo("next task"));
+        assertEquals(3, new Storage(path, true).load().size());
+    }
+
+    @Test
+    public void testSaveClearsJournal() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        List<Task> tasks = storage.load();
+        Todo todo = new Todo("read book");
+        tasks.add(todo);
+        storage.logAdd(todo);
+        assertTrue(new File(path + ".log").exists());
+
+        storage.save(tasks);
+        assertFalse(new File(path + ".log").exists(), "Compaction should drop the journal");
+        assertEquals(1, new Storage(path, true).load().size());
+    }
+
+    @Test
+    public void testStaleJournalIsDiscarded() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        storage.load();
+        storage.logAdd(new Todo("read book"));
+
+        // Simulate a compaction that wrote the snapshot but died before clearing the log
+        new Storage(path).save(List.of(new Todo("read book")));
+
+        assertEquals(1, new Storage(path, true).load().size());
+    }
+
+    @Test
+    public void testMultiWordAndEscapedDescriptionsRoundTrip() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        List<Task> tasks = List.of(new Todo("read the | pipe \\ book"),
+                new Deadline("return library book", "2019-12-02"),
+                new Event("project | meeting", "Mon 2pm", "4pm"));
+        new Storage(path).save(tasks);
+
+        List<Task> loaded = new Storage(path).load();
+        assertEquals(tasks, loaded);
+    }
+
+    @Test
+    public void testUnescapedBackslashFromOlderFilesIsLiteral() throws Exception {
+        String data = "D | 0 | back up C:\\ | 2019-12-02\n"
+                + "E | 0 | a\\b meeting | Mon\\ | 4pm\n";
+        List<Task> tasks = new ArrayList<>();
+        assertEquals(0, new TaskFileReader().read(new StringReader(data), tasks));
+
+        assertEquals("back up C:\\", tasks.get(0).description);
+        assertEquals(LocalDate.of(2019, 12, 2), ((Deadline) tasks.get(0)).by);
+        assertEquals("a\\b meeting", tasks.get(1).description);
+        assertEquals("Mon\\", ((Event) tasks.get(1)).from);
+    }
+
+    @Test
+    public void testReaderSkipsInvalidLines() throws Exception {
+        String data = "T | 1 | read book\r\n"
+                + "X | 0 | unknown\n"
+                + "D | 0 | return book | not-a-date\n"
+                + "\n"
+                + "E | 0 | project meeting | Mon 2pm | 4pm";
+        List<Task> tasks = new ArrayList<>();
+        int skipped = new TaskFileReader().read(new StringReader(data), tasks);
+
+        assertEquals(2, skipped);
+        assertEquals(2, tasks.size());
+        assertEquals("[T][X] read book", tasks.get(0).toString());
+        assertEquals("[E][ ] project meeting (from: Mon 2pm to: 4pm)", tasks.get(1).toString());
+    }
+
+    @Test
+    public void testBinaryFormatRoundTripsAndConverts() {
+        String textPath = tempDir.resolve("tasks.txt").toString();
+        String binaryPath = tempDir.resolve("tasks.bin").toString();
+        Deadline deadline = new Deadline("return book", "2019-12-02");
+        deadline.markAsDone();
+        List<Task> tasks = List.of(new Todo("read book"), deadline,
+                new Event("project meeting ünïcode", "Mon 2pm", "4pm"),
+                new Event("conference", "1/5/1969 9am", "3/5/1969"));
+        new Storage(textPath).save(tasks);
+
+        assertEquals(4, Storage.convert(textPath, Storage.Format.TEXT, binaryPath, Storage.Format.BINARY));
+        List<Task> loaded = new Storage(binaryPath, Storage.Format.BINARY, false).load();
+        assertEquals(tasks, loaded);
+        assertTrue(loaded.get(1).isDone, "Done flag should survive the binary format");
+        assertFalse(((Event) loaded.get(2)).isTimed());
+        Event conference = (Event) loaded.get(3);
+        assertEquals(LocalDateTime.of(1969, 5, 1, 9, 0), conference.start);
+        assertEquals(LocalDateTime.of(1969, 5, 4, 0, 0), conference.end);
+        assertTrue(new File(binaryPath).length() < new File(textPath).length());
+    }
+
+    @Test
+    public void testSwitchingFormatConvertsTheExistingFile() throws IOException {
+        List<Task> tasks = List.of(new Todo("read book"), new Deadline("return book", "2019-12-02"));
+        for (Storage.Format format: new Storage.Format[] {Storage.Format.BINARY, Storage.Format.SLOTS}) {
+            Path path = tempDir.resolve("switch-" + format);
+            new Storage(path.toString()).save(tasks);
+
+            Storage storage = new Storage(path.toString(), format, false);
+            assertEquals(tasks, storage.load(), format.toString());
+            assertEquals(format, Storage.detectFormat(path));
+            storage.logAdd(new Todo("new"));
+            storage.persist(List.of(tasks.get(0), tasks.get(1), new Todo("new")));
+            storage.close();
+
+            List<Task> reloaded = new Storage(path.toString(), format, false).load();
+            assertEquals(List.of(tasks.get(0), tasks.get(1), new Todo("new")), reloaded, format.toString());
+            // Going back to text converts again rather than reading the other format as text
+            assertEquals(reloaded, new Storage(path.toString()).load(), format.toString());
+            assertEquals(Storage.Format.TEXT, Storage.detectFormat(path));
+        }
+    }
+
+    @Test
+    public void testBinaryFormatKeepsDatesOutsideIntEpochDays() {
+        String path = tempDir.resolve("far.bin").toString();
+        List<Task> tasks = List.of(new Deadline("far future", LocalDate.MAX), new Deadline("far past", LocalDate.MIN));
+        new Storage(path, Storage.Format.BINARY, false).save(tasks);
+
+        List<Task> loaded = new Storage(path, Storage.Format.BINARY, false).load();
+        assertEquals(LocalDate.MAX, ((Deadline) loaded.get(0)).by);
+        assertEquals(LocalDate.MIN, ((Deadline) loaded.get(1)).by);
+    }
+
+    @Test
+    public void testBinaryBlocksStayWithinTheLimit() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tasks.add(new Todo("distinct description number " + i));
+        }
+        // A string table far larger than one block is split over several
+        List<Task> loaded = roundTrip(tasks, 256);
+        assertEquals(tasks, loaded);
+
+        // One string with its varint count and length fills a 256-byte block exactly
+        List<Task> atLimit = List.of(new Todo("y".repeat(253)));
+        assertEquals(atLimit, roundTrip(atLimit, 256));
+        assertThrows(IOException.class, () -> roundTrip(List.of(new Todo("y".repeat(254))), 256),
+                "A save the reader would reject must fail instead");
+    }
+
+    private static List<Task> roundTrip(List<Task> tasks, int maxBlock) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryTaskCodec(null, maxBlock).write(tasks, new DataOutputStream(bytes));
+        BinaryTaskCodec reader = new BinaryTaskCodec();
+        List<Task> loaded = new ArrayList<>();
+        reader.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), loaded);
+        assertTrue(reader.damagedRecords().isEmpty());
+        return loaded;
+    }
+
+    @Test
+    public void testRepeatedStringsAreSharedOnLoad() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tasks.add(new Todo("read " + "book"));
+            tasks.add(new Event("project meeting", "Mon 2pm", "4pm " + (i % 2)));
+        }
+        for (Storage.Format format: Storage.Format.values()) {
+            String path = tempDir.resolve("shared-" + format).toString();
+            new Storage(path, format, false).save(tasks);
+
+            StringDictionary strings = new StringDictionary();
+            List<Task> loaded = new Storage(path, format, false).load(strings);
+            assertEquals(tasks, loaded);
+            assertSame(loaded.get(0).description, loaded.get(98).description);
+            assertSame(((Event) loaded.get(1)).from, ((Event) loaded.get(99)).from);
+            assertEquals(5, strings.size(), format + " should load each distinct string once");
+            assertEquals(200 - 5, strings.sharedCount());
+            assertTrue(strings.sharedBytes() > 195 * 40);
+        }
+    }
+
+    @Test
+    public void testSlotFormatUpdatesInPlaceAndCompacts() {
+        String path = tempDir.resolve("tasks.slots").toString();
+        Storage storage = new Storage(path, Storage.Format.SLOTS, false);
+        List<Task> tasks = storage.load();
+        for (int i = 0; i < 2000; i++) {
+            Todo todo = new Todo("a fairly long description for task number " + i);
+            tasks.add(todo);
+            storage.logAdd(todo);
+        }
+        Event conference = new Event("conference", "1/5/1969 9am", "3/5/1969");
+        tasks.add(conference);
+        storage.logAdd(conference);
+        storage.flush();
+        long length = new File(path).length();
+
+        // Marks and deletes flip flags in place, so the file does not grow
+        tasks.get(0).markAsDone();
+        storage.logMark(0, true);
+        tasks.remove(1);
+        storage.logDelete(1);
+        storage.flush();
+        assertEquals(length, new File(path).length());
+        assertEquals(tasks, new Storage(path, Storage.Format.SLOTS, false).load());
+
+        BitSet selected = new BitSet();
+        selected.set(1, 1800);
+        storage.logDeleteAll(selected);
+        tasks.subList(1, 1800).clear();
+        storage.persist(tasks);
+        storage.close();
+
+        assertTrue(new File(path).length() < length / 4, "Tombstones should be compacted away");
+        List<Task> loaded = new Storage(path, Storage.Format.SLOTS, false).load();
+        assertEquals(tasks, loaded);
+        assertTrue(loaded.get(0).isDone);
+        assertEquals(LocalDateTime.of(1969, 5, 1, 9, 0), ((Event) loaded.get(loaded.size() - 1)).start);
+    }
+
+    @Test
+    public void testDamagedSlotFileIsCutSoLaterAppendsLoad() throws IOException {
+        String path = tempDir.resolve("damaged.slots").toString();
+        Storage storage = new Storage(path, Storage.Format.SLOTS, false);
+        List<Task> tasks = storage.load();
+        for (String description: List.of("read book", "return book", "join club")) {
+            Todo todo = new Todo(description);
+            tasks.add(todo);
+            storage.logAdd(todo);
+        }
+        storage.close();
+
+        // Give the second record a length that runs past the end of the file
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(SlotFile.HEADER_SIZE + 1);
+            int second = SlotFile.HEADER_SIZE + 5 + file.readInt() + 4;
+            file.seek(second + 1);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        storage = new Storage(path, Storage.Format.SLOTS, false);
+        tasks = storage.load();
+        assertEquals(List.of(new Todo("read book")), tasks);
+        assertTrue(new File(path + ".quarantine").exists());
+        Todo late = new Todo("late task");
+        tasks.add(late);
+        storage.logAdd(late);
+        storage.close();
+
+        assertEquals(List.of(new Todo("read book"), late), new Storage(path, Storage.Format.SLOTS, false).load());
+    }
+
+    @Test
+    public void testSlotRecordWithBadChecksumIsQuarantinedAlone() throws IOException {
+        String path = tempDir.resolve("checksum.slots").toString();
+        Storage storage = new Storage(path, Storage.Format.SLOTS, false);
+        List<Task> tasks = storage.load();
+        for (String description: List.of("read book", "return book", "join club")) {
+            Todo todo = new Todo(description);
+            tasks.add(todo);
+            storage.logAdd(todo);
+        }
+        storage.close();
+
+        // Change a letter of the second description, leaving its length intact
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(SlotFile.HEADER_SIZE + 1);
+            int second = SlotFile.HEADER_SIZE + 5 + file.readInt() + 4;
+            file.seek(second + 5 + 4);
+            file.write('R');
+        }
+
+        List<Task> loaded = new Storage(path, Storage.Format.SLOTS, false).load();
+        assertEquals(List.of(new Todo("read book"), new Todo("join club")), loaded);
+        assertTrue(Files.readString(Path.of(path + ".quarantine")).contains("52657475726e"));
+        assertEquals(loaded, new Storage(path, Storage.Format.SLOTS, false).load());
+    }
+
+    @Test
+    public void testBackgroundCompactionKeepsConcurrentRecords() {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        List<Task> tasks = storage.load();
+        for (int i = 0; i < Storage.COMPACT_THRESHOLD; i++) {
+            Todo todo = new Todo("task " + i);
+            tasks.add(todo);
+            storage.logAdd(todo);
+        }
+        storage.persist(tasks);
+
+        // Records logged while the snapshot is being written must survive the compaction
+        Todo late = new Todo("late task");
+        tasks.add(late);
+        storage.logAdd(late);
+        storage.logMark(0, true);
+        tasks.get(0).markAsDone();
+        storage.flush();
+
+        assertFalse(new File(path + ".log.old").exists(), "Sealed log should be dropped after compaction");
+        assertEquals(tasks, new Storage(path, true).load());
+        assertTrue(new Storage(path, true).load().get(0).isDone);
+    }
+
+    @Test
+    public void testCrashAfterSealReplaysBothLogs() throws Exception {
+        String path = tempDir.resolve("tasks.txt").toString();
+        Storage storage = new Storage(path, true);
+        storage.load();
+        storage.logAdd(new Todo("before seal"));
+
+        // Seal as a compaction would, then "crash" before the snapshot is written
+        new TaskJournal(path + ".log").seal(0);
+        storage.logAdd(new Todo("after seal"));
+
+        List<Task> loaded = new Storage(path, true).load();
+        assertEquals(List.of(new Todo("before seal"), new Todo("after seal")), loaded);
+    }
+}
@@ -2,6 +2,17 @@ package exactly;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 
@@ -27,4 +38,160 @@ public class TaskListTest {
         // Also, check that the size is correct
         assertEquals(2, taskList.size());
     }
+
+    @Test
+    public void testContainsTracksAddAndRemove() {
+        List<Task> initial = new ArrayList<>(List.of(new Todo("read book"), new Todo("read book")));
+        TaskList taskList = new TaskList(initial);
+        taskList.add(new Deadline("return book", "2019-12-02"), new Event("meeting", "Mon 2pm", "4pm"));
+
+        assertTrue(taskList.contains(new Todo("read book")));
+        assertTrue(taskList.contains(new Deadline("return book", "2019-12-02")));
+        assertFalse(taskList.contains(new Deadline("return book", "2019-12-03")));
+
+        // One of the two loaded duplicates is removed; the other must still be found
+        taskList.remove(0);
+        assertTrue(taskList.contains(new Todo("read book")));
+        taskList.remove(0);
+        assertFalse(taskList.contains(new Todo("read book")));
+    }
+
+    @Test
+    public void testFindMatchesLinearScan() {
+        String[] words = {"read", "book", "return", "project", "meeting", "bread", "books"};
+        String[] keywords = {"book", "ead", "re", "k", "project meet", "ook r", "zzz", "d book"};
+        Random random = new Random(42);
+        TaskList taskList = new TaskList();
+        for (int round = 0; round < 500; round++) {
+            if (taskList.size() > 0 && random.nextInt(3) == 0) {
+                taskList.remove(random.nextInt(taskList.size()));
+            } else {
+                String desc = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                taskList.add(new Todo(desc));
+            }
+            for (String kw: keywords) {
+                List<Task> expected = taskList.getTasks().stream()
+                        .filter(t -> t.description.contains(kw))
+                        .collect(Collectors.toList());
+                assertEquals(expected, taskList.find(kw), "find(\"" + kw + "\") should agree with a scan");
+            }
+        }
+    }
+
+    @Test
+    public void testModCountOnlyChangesOnRealMutations() {
+        TaskList taskList = new TaskList();
+        taskList.add(new Todo("read book"));
+        int afterAdd = taskList.getModCount();
+
+        taskList.listTasks();
+        taskList.find("book");
+        assertFalse(taskList.unmark(0), "Unmarking a task that is not done changes nothing");
+        assertEquals(afterAdd, taskList.getModCount());
+
+        assertTrue(taskList.markAsDone(0));
+        assertNotEquals(afterAdd, taskList.getModCount());
+        assertTrue(taskList.get(0).isDone);
+    }
+
+    @Test
+    public void testListTasksReflectsChangesAfterCaching() {
+        TaskList taskList = new TaskList();
+        taskList.add(new Todo("read book"), new Deadline("return book", "2019-12-02"));
+        String before = taskList.listTasks();
+        assertTrue(before.contains("2. [D][ ] return book (by: Dec 02 2019)"));
+
+        taskList.markAsDone(1);
+        String afterMark = taskList.listTasks();
+        assertTrue(afterMark.contains("2. [D][X] return book (by: Dec 02 2019)"));
+
+        taskList.remove(0);
+        assertTrue(taskList.listTasks().contains("1. [D][X] return book"));
+    }
+
+    @Test
+    public void testRemoveAllMatchesRemovingOneByOne() {
+        Random random = new Random(7);
+        TaskList bulk = new TaskList();
+        TaskList single = new TaskList();
+        for (int i = 0; i < 200; i++) {
+            String desc = "task " + random.nextInt(50);
+            bulk.add(new Todo(desc));
+            single.add(new Todo(desc));
+        }
+        BitSet selected = new BitSet();
+        for (int i = 0; i < 200; i++) {
+            if (random.nextInt(3) == 0) selected.set(i);
+        }
+
+        List<Task> removed = bulk.removeAll(selected);
+        for (int i = selected.length() - 1; i >= 0; i--) {
+            if (selected.get(i)) single.remove(i);
+        }
+
+        assertEquals(selected.cardinality(), removed.size());
+        assertEquals(single.getTasks(), bulk.getTasks());
+        assertEquals(single.find("task 1"), bulk.find("task 1"));
+        for (int i = 0; i < 50; i++) {
+            Todo t = new Todo("task " + i);
+            assertEquals(single.contains(t), bulk.contains(t));
+        }
+    }
+
+    @Test
+    public void testDueBetweenMatchesSortedScan() {
+        Random random = new Random(11);
+        TaskList taskList = new TaskList();
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        for (int round = 0; round < 400; round++) {
+            int choice = random.nextInt(6);
+            if (taskList.size() > 0 && choice == 0) {
+                taskList.remove(random.nextInt(taskList.size()));
+            } else if (taskList.size() > 0 && choice == 1) {
+                BitSet selected = new BitSet();
+                selected.set(random.nextInt(taskList.size()));
+                selected.set(random.nextInt(taskList.size()));
+                taskList.removeAll(selected);
+            } else if (choice == 2) {
+                taskList.add(new Todo("todo " + round));
+            } else {
+                taskList.add(new Deadline("deadline " + round, start.plusDays(random.nextInt(30))));
+            }
+            LocalDate from = start.plusDays(random.nextInt(30));
+            LocalDate to = from.plusDays(random.nextInt(10));
+            List<Task> expected = taskList.getTasks().stream()
+                    .filter(t -> t instanceof Deadline)
+                    .filter(t -> !((Deadline) t).by.isBefore(from) && !((Deadline) t).by.isAfter(to))
+                    .sorted(Comparator.comparing(t -> ((Deadline) t).by))
+                    .collect(Collectors.toList());
+            assertEquals(expected, taskList.dueBetween(from, to));
+        }
+    }
+
+    @Test
+    public void testEventsBetweenMatchesScan() {
+        Random random = new Random(13);
+        TaskList taskList = new TaskList();
+        LocalDateTime base = LocalDateTime.of(2025, 5, 1, 0, 0);
+        for (int round = 0; round < 400; round++) {
+            if (taskList.size() > 0 && random.nextInt(5) == 0) {
+                taskList.remove(random.nextInt(taskList.size()));
+            } else {
+                LocalDateTime start = base.plusMinutes(30L * random.nextInt(200));
+                // Mostly short events, with the odd multi-day one
+                LocalDateTime end = start.plusMinutes(random.nextInt(10) == 0
+                        ? 60L * (24 + random.nextInt(72)) : 30L * (1 + random.nextInt(8)));
+                taskList.add(new Event("event " + round, start.toString().replace('T', ' '),
+                        end.toString().replace('T', ' ')));
+            }
+            LocalDateTime from = base.plusMinutes(30L * random.nextInt(200));
+            LocalDateTime to = from.plusMinutes(30L * (1 + random.nextInt(20)));
+            List<Task> expected = taskList.getTasks().stream()
+                    .map(t -> (Event) t)
+                    .filter(e -> e.start.isBefore(to) && e.end.isAfter(from))
+                    .sorted(Comparator.comparing(e -> e.start))
+                    .collect(Collectors.toList());
+            assertEquals(expected, taskList.eventsBetween(from, to));
+        }
+    }
 }